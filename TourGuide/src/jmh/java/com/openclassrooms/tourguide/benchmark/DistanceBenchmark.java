@@ -0,0 +1,82 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.attraction.DistanceEngine;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import rewardCentral.RewardCentral;
+
+/**
+ * Cost of one attraction/location distance: the original
+ * {@link RewardsService#getDistance(Location, Location)} against the
+ * precomputed {@link DistanceEngine}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+
+	private static final int LOCATIONS = 1024;
+
+	private RewardsService rewardsService;
+	private List<Attraction> attractions;
+	private DistanceEngine engine;
+	private Location[] locations;
+	private DistanceEngine.Point[] points;
+	private double threshold;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		StubGpsUtil gpsUtil = new StubGpsUtil(26, 0, 42);
+		rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		attractions = gpsUtil.getAttractions();
+		engine = new DistanceEngine(attractions);
+		threshold = DistanceEngine.threshold(10);
+
+		SplittableRandom random = new SplittableRandom(7);
+		locations = new Location[LOCATIONS];
+		points = new DistanceEngine.Point[LOCATIONS];
+		for (int i = 0; i < LOCATIONS; i++) {
+			locations[i] = new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180));
+			points[i] = DistanceEngine.point(locations[i]);
+		}
+	}
+
+	@Benchmark
+	public double getDistance() {
+		int i = next++ & (LOCATIONS - 1);
+		return rewardsService.getDistance(attractions.get(i % attractions.size()), locations[i]);
+	}
+
+	@Benchmark
+	public double engineDistance() {
+		int i = next++ & (LOCATIONS - 1);
+		return engine.distance(i % attractions.size(), points[i]);
+	}
+
+	@Benchmark
+	public boolean engineIsWithin() {
+		int i = next++ & (LOCATIONS - 1);
+		return engine.isWithin(i % attractions.size(), points[i], threshold);
+	}
+}
@@ -0,0 +1,25 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulated latency of the external services stubbed by the benchmarks.
+ */
+final class Latency {
+
+	private Latency() {
+	}
+
+	/**
+	 * Park the calling thread.
+	 *
+	 * @param micros
+	 *            Latency in microseconds, nothing happens when 0.
+	 */
+	static void pause(long micros) {
+		if (micros > 0) {
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+		}
+	}
+}
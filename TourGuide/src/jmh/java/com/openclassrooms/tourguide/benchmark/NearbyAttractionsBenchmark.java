@@ -0,0 +1,47 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.dto.NearAttractionDto;
+
+/**
+ * {@code getNearByAttractions} for the last location of known users. After the
+ * warmup the reward points of the nearest attractions are cached, so this
+ * mostly measures the index lookup and the assembly of the DTOs; from the
+ * snapshot of the user, only the assembly remains.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearbyAttractionsBenchmark {
+
+	private int next;
+
+	@Benchmark
+	public NearAttractionDto[] getNearByAttractions(TourGuideState state) {
+		int i = next++ & (TourGuideState.USERS - 1);
+		return state.tourGuideService
+				.getNearByAttractions(CompletableFuture.completedFuture(state.users[i].getLastVisitedLocation()))
+				.join();
+	}
+
+	@Benchmark
+	public NearAttractionDto[] getNearByAttractionsFromSnapshot(TourGuideState state) {
+		int i = next++ & (TourGuideState.USERS - 1);
+		return state.tourGuideService.getNearByAttractions(state.users[i]).join();
+	}
+}
@@ -0,0 +1,93 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.executor.BoundedExecutor;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Full evaluation of the rewards of a user who was never rewarded before, for
+ * several history lengths and attraction counts. Every invocation uses a new
+ * user id, so every reward misses the points cache and pays the RewardCentral
+ * latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RewardsBenchmark {
+
+	private static final int HISTORIES = 64;
+
+	@Param({ "3", "30", "300" })
+	public int historyLength;
+
+	@Param({ "26", "260", "2600" })
+	public int attractionCount;
+
+	@Param({ "0", "100" })
+	public long rewardCentralLatencyMicros;
+
+	private RewardsService rewardsService;
+	private BoundedExecutor rewardCentralExecutor;
+	private StubGpsUtil gpsUtil;
+	private List<List<VisitedLocation>> histories;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		gpsUtil = new StubGpsUtil(attractionCount, 0, 42);
+		rewardCentralExecutor = new BoundedExecutor("reward-central", BoundedExecutor.Mode.VIRTUAL, 1000, 100_000,
+				BoundedExecutor.RejectionPolicy.BLOCK);
+		RewardPointsCache cache = new RewardPointsCache(new StubRewardCentral(rewardCentralLatencyMicros),
+				rewardCentralExecutor, Duration.ofMinutes(1), 100_000);
+		rewardsService = new RewardsService(gpsUtil, cache, RewardsService.defaultRewardExecutor());
+		rewardsService.getAttractionIndex();
+
+		SplittableRandom random = new SplittableRandom(7);
+		histories = new ArrayList<>(HISTORIES);
+		for (int i = 0; i < HISTORIES; i++) {
+			histories.add(gpsUtil.history(new UUID(0, i), historyLength, random));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		rewardsService.getRewardExecutor().close();
+		rewardCentralExecutor.close();
+	}
+
+	@Benchmark
+	public User calculateRewards() {
+		User user = new User(UUID.randomUUID(), "benchmark", "000", "benchmark@tourGuide.com");
+		for (VisitedLocation visitedLocation : histories.get(next++ & (HISTORIES - 1))) {
+			user.addToVisitedLocations(visitedLocation);
+		}
+		rewardsService.calculateRewards(user);
+		return user;
+	}
+}
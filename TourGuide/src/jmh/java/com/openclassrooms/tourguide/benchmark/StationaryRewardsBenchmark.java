@@ -0,0 +1,99 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.attraction.ProximityEngine;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.executor.BoundedExecutor;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Incremental rewards of users who barely move: every invocation adds a fix a
+ * few yards from the previous ones and evaluates it. A movement threshold of
+ * zero evaluates every fix; otherwise the fixes staying in the region of the
+ * last evaluated one are skipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StationaryRewardsBenchmark {
+
+	private static final int USERS = 1024;
+
+	@Param({ "26", "2600" })
+	public int attractionCount;
+
+	@Param({ "0", "5" })
+	public double movementThresholdMiles;
+
+	private RewardsService rewardsService;
+	private BoundedExecutor rewardCentralExecutor;
+	private User[] users;
+	private Location[] homes;
+	private SplittableRandom random;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		StubGpsUtil gpsUtil = new StubGpsUtil(attractionCount, 0, 42);
+		rewardCentralExecutor = new BoundedExecutor("reward-central", BoundedExecutor.Mode.VIRTUAL, 1000, 100_000,
+				BoundedExecutor.RejectionPolicy.BLOCK);
+		RewardPointsCache cache = new RewardPointsCache(new StubRewardCentral(0), rewardCentralExecutor,
+				Duration.ofMinutes(1), 100_000);
+		rewardsService = new RewardsService(gpsUtil, cache, RewardsService.defaultRewardExecutor(),
+				new ProximityEngine(movementThresholdMiles), new SimpleMeterRegistry());
+
+		random = new SplittableRandom(7);
+		users = new User[USERS];
+		homes = new Location[USERS];
+		for (int i = 0; i < USERS; i++) {
+			users[i] = new User(new UUID(0, i), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com");
+			homes[i] = new Location(random.nextDouble(-60, 60), random.nextDouble(-180, 180));
+			users[i].addToVisitedLocations(new VisitedLocation(users[i].getUserId(), homes[i], new Date()));
+			rewardsService.calculateRewards(users[i]);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		rewardsService.getRewardExecutor().close();
+		rewardCentralExecutor.close();
+	}
+
+	@Benchmark
+	public User calculateRewards() {
+		int i = next++ & (USERS - 1);
+		User user = users[i];
+		// within a few hundred feet of home
+		Location fix = new Location(homes[i].latitude + random.nextDouble(-0.001, 0.001),
+				homes[i].longitude + random.nextDouble(-0.001, 0.001));
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), fix, new Date()));
+		rewardsService.calculateRewards(user);
+		return user;
+	}
+}
@@ -0,0 +1,98 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * GpsUtil with a fixed, seeded set of attractions of any size and a
+ * configurable latency instead of the random sleeps of the real library.
+ * Unlike the library, {@link #getAttractions()} returns the same attractions
+ * on every call.
+ */
+public class StubGpsUtil extends GpsUtil {
+
+	private final List<Attraction> attractions;
+	private final long latencyMicros;
+	private final SplittableRandom random;
+
+	/**
+	 * Create the stub.
+	 *
+	 * @param attractionCount
+	 *            Number of attractions, spread over the whole globe.
+	 * @param latencyMicros
+	 *            Latency of {@link #getUserLocation(UUID)} in microseconds.
+	 * @param seed
+	 *            Seed of the generated attractions and locations.
+	 */
+	public StubGpsUtil(int attractionCount, long latencyMicros, long seed) {
+		this.latencyMicros = latencyMicros;
+		this.random = new SplittableRandom(seed);
+		List<Attraction> generated = new ArrayList<>(attractionCount);
+		for (int i = 0; i < attractionCount; i++) {
+			generated.add(new Attraction("Attraction " + i, "City " + i, "State", randomLatitude(random),
+					randomLongitude(random)));
+		}
+		this.attractions = Collections.unmodifiableList(generated);
+	}
+
+	@Override
+	public VisitedLocation getUserLocation(UUID userId) {
+		Latency.pause(latencyMicros);
+		SplittableRandom local;
+		synchronized (random) {
+			local = random.split();
+		}
+		return new VisitedLocation(userId, new Location(randomLatitude(local), randomLongitude(local)), new Date());
+	}
+
+	@Override
+	public List<Attraction> getAttractions() {
+		return attractions;
+	}
+
+	/**
+	 * Generate a history of locations, half of them within a mile or so of an
+	 * attraction so that rewards are earned.
+	 *
+	 * @param userId
+	 *            Id of the user.
+	 * @param length
+	 *            Number of locations.
+	 * @param random
+	 *            Source of randomness.
+	 * @return Visited locations, oldest first.
+	 */
+	public List<VisitedLocation> history(UUID userId, int length, SplittableRandom random) {
+		List<VisitedLocation> history = new ArrayList<>(length);
+		for (int i = 0; i < length; i++) {
+			Location location;
+			if (i % 2 == 0) {
+				Attraction attraction = attractions.get(random.nextInt(attractions.size()));
+				location = new Location(attraction.latitude + random.nextDouble(-0.01, 0.01),
+						attraction.longitude + random.nextDouble(-0.01, 0.01));
+			} else {
+				location = new Location(randomLatitude(random), randomLongitude(random));
+			}
+			history.add(new VisitedLocation(userId, location, new Date()));
+		}
+		return history;
+	}
+
+	private static double randomLatitude(SplittableRandom random) {
+		return random.nextDouble(-85.05112878, 85.05112878);
+	}
+
+	private static double randomLongitude(SplittableRandom random) {
+		return random.nextDouble(-180, 180);
+	}
+}
@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.UUID;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * RewardCentral with a configurable latency instead of a random sleep of up to
+ * a second. The points are derived from the ids, so they are stable.
+ */
+public class StubRewardCentral extends RewardCentral {
+
+	private final long latencyMicros;
+
+	/**
+	 * Create the stub.
+	 *
+	 * @param latencyMicros
+	 *            Latency of every call in microseconds.
+	 */
+	public StubRewardCentral(long latencyMicros) {
+		this.latencyMicros = latencyMicros;
+	}
+
+	@Override
+	public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+		Latency.pause(latencyMicros);
+		return 1 + Math.floorMod(attractionId.hashCode() ^ userId.hashCode(), 1000);
+	}
+}
@@ -0,0 +1,41 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * TripPricer with a configurable latency instead of a random sleep. It returns
+ * five providers whose prices depend on the request, like the real library.
+ */
+public class StubTripPricer extends TripPricer {
+
+	private static final int PROVIDERS = 5;
+
+	private final long latencyMicros;
+
+	/**
+	 * Create the stub.
+	 *
+	 * @param latencyMicros
+	 *            Latency of every call in microseconds.
+	 */
+	public StubTripPricer(long latencyMicros) {
+		this.latencyMicros = latencyMicros;
+	}
+
+	@Override
+	public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+			int rewardsPoints) {
+		Latency.pause(latencyMicros);
+		List<Provider> providers = new ArrayList<>(PROVIDERS);
+		for (int i = 0; i < PROVIDERS; i++) {
+			double price = Math.max(0, (100 + i * 25) * (adults + children / 2.0) * nightsStay - rewardsPoints);
+			providers.add(new Provider(attractionId, "Provider " + i, price));
+		}
+		return providers;
+	}
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.executor.BoundedExecutor;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
+import com.openclassrooms.tourguide.user.ShardedUserRegistry;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * TourGuideService wired to the stubs, with a fixed set of users whose
+ * rewards are already calculated. The tracker is stopped right away so that
+ * it does not compete with the benchmark.
+ */
+@State(Scope.Benchmark)
+public class TourGuideState {
+
+	public static final int USERS = 1024;
+
+	@Param({ "26", "2600" })
+	public int attractionCount;
+
+	@Param({ "0", "100" })
+	public long latencyMicros;
+
+	public TourGuideService tourGuideService;
+	public StubGpsUtil gpsUtil;
+	public User[] users;
+
+	private BoundedExecutor rewardCentralExecutor;
+
+	@Setup
+	public void setUp() {
+		InternalTestHelper.setInternalUserNumber(0);
+		gpsUtil = new StubGpsUtil(attractionCount, latencyMicros, 42);
+		rewardCentralExecutor = new BoundedExecutor("reward-central", BoundedExecutor.Mode.VIRTUAL, 1000, 100_000,
+				BoundedExecutor.RejectionPolicy.BLOCK);
+		RewardPointsCache cache = new RewardPointsCache(new StubRewardCentral(latencyMicros), rewardCentralExecutor,
+				RewardPointsCache.DEFAULT_TIME_TO_LIVE, RewardPointsCache.DEFAULT_MAXIMUM_SIZE);
+		RewardsService rewardsService = new RewardsService(gpsUtil, cache, RewardsService.defaultRewardExecutor());
+		tourGuideService = new TourGuideService(gpsUtil, rewardsService, new StubTripPricer(latencyMicros),
+				new ShardedUserRegistry(), new TrackerSettings(Duration.ofHours(1), 1, 1));
+		tourGuideService.tracker.stopTracking();
+
+		SplittableRandom random = new SplittableRandom(7);
+		List<User> created = new ArrayList<>(USERS);
+		for (int i = 0; i < USERS; i++) {
+			User user = new User(new UUID(0, i), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com");
+			for (VisitedLocation visitedLocation : gpsUtil.history(user.getUserId(), 10, random)) {
+				user.addToVisitedLocations(visitedLocation);
+			}
+			rewardsService.calculateRewards(user);
+			tourGuideService.addUser(user);
+			created.add(user);
+		}
+		users = created.toArray(new User[0]);
+	}
+
+	@TearDown
+	public void tearDown() {
+		tourGuideService.shutdown();
+		rewardCentralExecutor.close();
+	}
+}
@@ -0,0 +1,37 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tripPricer.Provider;
+
+/**
+ * {@code getTripDeals} for users with a few rewards each. The first call for
+ * each user pays the simulated TripPricer latency; the following ones, until
+ * the cache entry expires, measure the cached path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TripDealsBenchmark {
+
+	private int next;
+
+	@Benchmark
+	public List<Provider> getTripDeals(TourGuideState state) {
+		return state.tourGuideService.getTripDeals(state.users[next++ & (TourGuideState.USERS - 1)]);
+	}
+}
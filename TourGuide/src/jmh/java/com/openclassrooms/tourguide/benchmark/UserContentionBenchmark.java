@@ -0,0 +1,93 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * One user shared by the tracker and the rewards workers (writers) and by the
+ * request threads (readers). The history is cleared every
+ * {@link #MAX_HISTORY} appends so that its size stays bounded.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserContentionBenchmark {
+
+	private static final int MAX_HISTORY = 4096;
+	private static final int REWARDS = 1024;
+
+	private User user;
+	private VisitedLocation visitedLocation;
+	private Attraction[] attractions;
+	private final AtomicInteger appended = new AtomicInteger();
+	private final AtomicInteger rewarded = new AtomicInteger();
+
+	@Setup
+	public void setUp() {
+		user = new User(UUID.randomUUID(), "benchmark", "000", "benchmark@tourGuide.com");
+		visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008), new Date());
+		attractions = new Attraction[REWARDS];
+		for (int i = 0; i < REWARDS; i++) {
+			attractions[i] = new Attraction("Attraction " + i, "City", "State", 0, 0);
+		}
+	}
+
+	@Benchmark
+	@Group("user")
+	@GroupThreads(2)
+	public void addToVisitedLocations() {
+		if (appended.incrementAndGet() % MAX_HISTORY == 0) {
+			user.clearVisitedLocations();
+		}
+		user.addToVisitedLocations(visitedLocation);
+	}
+
+	@Benchmark
+	@Group("user")
+	@GroupThreads(1)
+	public boolean addUserReward() {
+		int i = rewarded.getAndIncrement() & (REWARDS - 1);
+		return user.addUserReward(new UserReward(visitedLocation, attractions[i], i));
+	}
+
+	@Benchmark
+	@Group("user")
+	@GroupThreads(2)
+	public List<VisitedLocation> getVisitedLocations() {
+		return user.getVisitedLocations();
+	}
+
+	@Benchmark
+	@Group("user")
+	@GroupThreads(1)
+	public Map<String, UserReward> getUserRewards() {
+		return user.getUserRewards();
+	}
+}
@@ -3,53 +3,72 @@ package com.openclassrooms.tourguide;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 
 import gpsUtil.location.VisitedLocation;
 
 import com.openclassrooms.tourguide.dto.NearAttractionDto;
+import com.openclassrooms.tourguide.executor.BoundedExecutor;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
 import tripPricer.Provider;
 
+// Every endpoint returns a CompletableFuture started on the request executor: the servlet
+// thread only hands the request over and is released, the response is written on completion.
 @RestController
 public class TourGuideController {
 	private TourGuideService tourGuideService;
+	private BoundedExecutor requests;
      public TourGuideController(TourGuideService tourGuideService) {
          this.tourGuideService = tourGuideService;
+         this.requests = tourGuideService.getExecutors().getRequest();
      }
     @RequestMapping("/")
     public String index() {
         return "Greetings from TourGuide!";
     }
-    @Async
+    
+    // completed on the GPS executor when the user has no location yet
     @RequestMapping("/getLocation") 
-    public CompletableFuture<VisitedLocation> getLocation(@RequestParam String userName) throws InterruptedException, ExecutionException {
-    	return tourGuideService.getUserLocation(getUser(userName));
+    public CompletableFuture<VisitedLocation> getLocation(@RequestParam String userName) {
+    	return requests.supply(() -> getUser(userName))
+    			.thenCompose(tourGuideService::getUserLocation);
     }
-    @Async
+    
+    // read from the snapshot of the user, completed once RewardCentral has priced the five attractions
     @RequestMapping("/getNearbyAttractions") 
-    public CompletableFuture<NearAttractionDto[]> getNearbyAttractions(@RequestParam String userName) throws InterruptedException, ExecutionException {
-    	CompletableFuture<VisitedLocation> visitedLocation = tourGuideService.getUserLocation(getUser(userName));
-    	return tourGuideService.getNearByAttractions(visitedLocation);
+    public CompletableFuture<NearAttractionDto[]> getNearbyAttractions(@RequestParam String userName) {
+    	return requests.supply(() -> getUser(userName))
+    			.thenCompose(tourGuideService::getNearByAttractions);
     }
     
     @RequestMapping("/getRewards") 
-    public Map<String,UserReward> getRewards(@RequestParam String userName) {
-    	return tourGuideService.getUserRewards(getUser(userName));
+    public CompletableFuture<Map<String,UserReward>> getRewards(@RequestParam String userName) {
+    	return requests.supply(() -> tourGuideService.getUserRewards(getUser(userName)));
     }
        
+    // completed on the pricing executor, or right away when the deals are cached
     @RequestMapping("/getTripDeals")
-    public List<Provider> getTripDeals(@RequestParam String userName) {
-    	return tourGuideService.getTripDeals(getUser(userName));
+    public CompletableFuture<List<Provider>> getTripDeals(@RequestParam String userName) {
+    	return requests.supply(() -> getUser(userName))
+    			.thenCompose(tourGuideService::getTripDealsAsync);
+    }
+    
+    // the request executor is full: the client retries later instead of holding a servlet thread
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String rejected(RejectedExecutionException e) {
+    	return e.getMessage();
     }
     
     private User getUser(String userName) {
@@ -57,4 +76,4 @@ public class TourGuideController {
     }
    
 
-}
\ No newline at end of file
+}
@@ -1,11 +1,37 @@
 package com.openclassrooms.tourguide;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.MeterRegistry;
 import rewardCentral.RewardCentral;
+import tripPricer.TripPricer;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.ProximityEngine;
+import com.openclassrooms.tourguide.cache.NearbyAttractionsCache;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.event.LocationEventBus;
+import com.openclassrooms.tourguide.executor.BoundedExecutor;
+import com.openclassrooms.tourguide.health.InternalUsersHealthIndicator;
+import com.openclassrooms.tourguide.helper.InternalUserLoader;
+import com.openclassrooms.tourguide.persistence.JournalStore;
 import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
+import com.openclassrooms.tourguide.user.RetentionPolicy;
+import com.openclassrooms.tourguide.user.ShardedUserRegistry;
+import com.openclassrooms.tourguide.user.UserJournal;
+import com.openclassrooms.tourguide.user.UserRegistry;
 
 @Configuration
 public class TourGuideModule {
@@ -16,8 +42,34 @@ public class TourGuideModule {
 	}
 	
 	@Bean
-	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+	public AttractionCatalog attractionCatalog(
+			@Value("${tourguide.attractions.refresh-interval:0}") Duration refreshInterval) {
+		AttractionCatalog catalog = new AttractionCatalog(getGpsUtil()::getAttractions);
+		catalog.scheduleRefresh(refreshInterval);
+		return catalog;
+	}
+	
+	@Bean
+	public RewardsService getRewardsService(AttractionCatalog attractionCatalog,
+			RewardPointsCache rewardPointsCache, @Qualifier("rewardExecutor") BoundedExecutor rewardExecutor,
+			ProximityEngine proximityEngine, MeterRegistry meterRegistry) {
+		return new RewardsService(attractionCatalog, rewardPointsCache, rewardExecutor, proximityEngine,
+				meterRegistry);
+	}
+	
+	@Bean
+	public ProximityEngine proximityEngine(
+			@Value("${tourguide.rewards.movement-threshold:5}") double movementThresholdMiles) {
+		return new ProximityEngine(movementThresholdMiles);
+	}
+	
+	@Bean
+	public RewardPointsCache rewardPointsCache(
+			@Value("${tourguide.rewards.cache.time-to-live:1h}") Duration timeToLive,
+			@Value("${tourguide.rewards.cache.maximum-size:1000000}") long maximumSize,
+			@Qualifier("rewardCentralExecutor") BoundedExecutor rewardCentralExecutor, MeterRegistry meterRegistry) {
+		return new RewardPointsCache(getRewardCentral(), rewardCentralExecutor, timeToLive, maximumSize,
+				meterRegistry);
 	}
 	
 	@Bean
@@ -25,4 +77,77 @@ public class TourGuideModule {
 		return new RewardCentral();
 	}
 	
+	@Bean
+	public TripPricer getTripPricer() {
+		return new TripPricer();
+	}
+	
+	@Bean
+	public TripDealsCache tripDealsCache(
+			@Value("${tourguide.trip-deals.cache.time-to-live:10m}") Duration timeToLive,
+			@Value("${tourguide.trip-deals.cache.maximum-size:100000}") long maximumSize,
+			@Qualifier("pricingExecutor") BoundedExecutor pricingExecutor, MeterRegistry meterRegistry) {
+		return new TripDealsCache(getTripPricer(), pricingExecutor, timeToLive, maximumSize, meterRegistry);
+	}
+	
+	@Bean
+	public NearbyAttractionsCache nearbyAttractionsCache(
+			@Value("${tourguide.nearby.max-staleness:1m}") Duration maxStaleness,
+			AttractionCatalog attractionCatalog, MeterRegistry meterRegistry) {
+		return new NearbyAttractionsCache(attractionCatalog::getIndex, TourGuideService.NEARBY_ATTRACTIONS,
+				maxStaleness, meterRegistry);
+	}
+	
+	@Bean
+	public UserRegistry userRegistry(@Value("${tourguide.users.shards:64}") int shards,
+			@Value("${tourguide.history.max-count:0}") int maxCount,
+			@Value("${tourguide.history.max-age:0}") Duration maxAge,
+			@Value("${tourguide.history.downsample-after:0}") Duration downsampleAfter,
+			@Value("${tourguide.history.downsample-interval:0}") Duration downsampleInterval,
+			UserJournal userJournal, AttractionCatalog attractionCatalog) {
+		UserRegistry registry = new ShardedUserRegistry(shards,
+				new RetentionPolicy(maxCount, maxAge, downsampleAfter, downsampleInterval), userJournal);
+		userJournal.restore(registry, attractionCatalog.get().getAttractions());
+		return registry;
+	}
+	
+	@Bean
+	public UserJournal userJournal(@Value("${tourguide.persistence.enabled:false}") boolean enabled,
+			@Value("${tourguide.persistence.directory:data/journal}") Path directory,
+			@Value("${tourguide.persistence.segment-size:64MB}") DataSize segmentSize,
+			@Value("${tourguide.persistence.flush-interval:1s}") Duration flushInterval,
+			@Value("${tourguide.persistence.compaction-interval:1h}") Duration compactionInterval) {
+		if (!enabled) {
+			return UserJournal.NONE;
+		}
+		return new JournalStore(directory, Math.toIntExact(segmentSize.toBytes()), flushInterval,
+				compactionInterval);
+	}
+	
+	@Bean
+	public InternalUserLoader internalUserLoader(@Value("${tourguide.internal-users.seed:0}") long seed,
+			@Value("${tourguide.internal-users.async:false}") boolean async) {
+		return new InternalUserLoader(seed, async, ForkJoinPool.commonPool());
+	}
+	
+	@Bean
+	public HealthIndicator internalUsersHealthIndicator(InternalUserLoader internalUserLoader) {
+		return new InternalUsersHealthIndicator(internalUserLoader);
+	}
+	
+	@Bean
+	public LocationEventBus locationEventBus(@Value("${tourguide.events.partitions:4}") int partitions,
+			@Value("${tourguide.events.capacity:8192}") int capacity,
+			@Value("${tourguide.events.batch-size:256}") int batchSize) {
+		return new LocationEventBus(partitions, capacity, batchSize);
+	}
+	
+	@Bean
+	public TrackerSettings trackerSettings(
+			@Value("${tourguide.tracker.polling-interval:5m}") Duration pollingInterval,
+			@Value("${tourguide.tracker.partitions:10}") int partitions,
+			@Value("${tourguide.tracker.max-concurrency:200}") int maxConcurrency) {
+		return new TrackerSettings(pollingInterval, partitions, maxConcurrency);
+	}
+	
 }
@@ -0,0 +1,201 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * Versioned source of the attractions for every service.
+ * <p>
+ * The attractions are loaded once, on first use, into an immutable
+ * {@link Snapshot}: the {@link AttractionIndex} with the primitive coordinate
+ * arrays of its {@link DistanceEngine}, and lookups by attraction id and name.
+ * Readers get the current snapshot with a volatile read and never block once
+ * it is loaded; a snapshot obtained at the start of a calculation stays
+ * consistent for the whole of it.
+ * <p>
+ * {@link #refresh()} loads the attractions again and publishes the new
+ * snapshot atomically under the next version, optionally on a fixed delay.
+ * The derived state built on a previous version, such as nearby attraction
+ * snapshots and proximity regions, is tied to its index and recomputed on
+ * first use against the new one.
+ *
+ * @author Aitor
+ */
+public class AttractionCatalog implements AutoCloseable {
+
+	private final Logger logger = LoggerFactory.getLogger(AttractionCatalog.class);
+	private final Supplier<List<Attraction>> source;
+	private volatile Snapshot snapshot;
+	private volatile ScheduledExecutorService scheduler;
+
+	/**
+	 * Create a catalog, loaded on first use.
+	 *
+	 * @param source
+	 *            Supplier of the current attractions, typically
+	 *            {@code gpsUtil::getAttractions}.
+	 */
+	public AttractionCatalog(Supplier<List<Attraction>> source) {
+		this.source = source;
+	}
+
+	/**
+	 * Get the current snapshot, loading the attractions if it is the first call.
+	 *
+	 * @return Current snapshot.
+	 */
+	public Snapshot get() {
+		Snapshot current = snapshot;
+		if (current == null) {
+			synchronized (this) {
+				current = snapshot;
+				if (current == null) {
+					current = new Snapshot(1, source.get());
+					snapshot = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Get the index of the current snapshot.
+	 *
+	 * @return Current attraction index.
+	 */
+	public AttractionIndex getIndex() {
+		return get().index;
+	}
+
+	/**
+	 * Load the attractions again and publish them as a new version. Readers keep
+	 * the previous snapshot until the new one is built; concurrent refreshes
+	 * are serialized.
+	 *
+	 * @return New snapshot.
+	 */
+	public synchronized Snapshot refresh() {
+		Snapshot current = snapshot;
+		Snapshot next = new Snapshot(current == null ? 1 : current.version + 1, source.get());
+		snapshot = next;
+		return next;
+	}
+
+	/**
+	 * Refresh the catalog on a fixed delay, on a daemon thread, until it is
+	 * closed. A failed refresh is logged and the current snapshot kept.
+	 *
+	 * @param interval
+	 *            Delay between refreshes; zero or negative to never refresh.
+	 */
+	public synchronized void scheduleRefresh(Duration interval) {
+		if (interval.isZero() || interval.isNegative() || scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "attraction-catalog");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long millis = interval.toMillis();
+		scheduler.scheduleWithFixedDelay(this::refreshQuietly, millis, millis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	private void refreshQuietly() {
+		try {
+			Snapshot next = refresh();
+			logger.debug("Loaded version " + next.version + " of the attractions: " + next.getAttractions().size()
+					+ " attractions");
+		} catch (RuntimeException e) {
+			logger.warn("Attraction catalog refresh failed, keeping the current version", e);
+		}
+	}
+
+	/**
+	 * Immutable version of the attractions.
+	 */
+	public static final class Snapshot {
+		private final long version;
+		private final Instant loadedAt = Instant.now();
+		private final AttractionIndex index;
+		private final Map<UUID, Attraction> byId;
+		private final Map<String, Attraction> byName;
+
+		Snapshot(long version, List<Attraction> attractions) {
+			this.version = version;
+			this.index = new AttractionIndex(attractions);
+			Map<UUID, Attraction> byId = new HashMap<>();
+			Map<String, Attraction> byName = new HashMap<>();
+			for (Attraction attraction : index.getAttractions()) {
+				byId.put(attraction.attractionId, attraction);
+				byName.putIfAbsent(attraction.attractionName, attraction);
+			}
+			this.byId = Map.copyOf(byId);
+			this.byName = Map.copyOf(byName);
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		public Instant getLoadedAt() {
+			return loadedAt;
+		}
+
+		public AttractionIndex getIndex() {
+			return index;
+		}
+
+		/**
+		 * Get the attractions of this version.
+		 *
+		 * @return Unmodifiable list of the attractions, in index order.
+		 */
+		public List<Attraction> getAttractions() {
+			return index.getAttractions();
+		}
+
+		/**
+		 * Get an attraction by id.
+		 *
+		 * @param attractionId
+		 *            Id of the attraction.
+		 * @return Attraction, null if this version has none with this id.
+		 */
+		public Attraction getAttraction(UUID attractionId) {
+			return byId.get(attractionId);
+		}
+
+		/**
+		 * Get an attraction by name, the first one of the list if several have
+		 * the same name.
+		 *
+		 * @param attractionName
+		 *            Name of the attraction.
+		 * @return Attraction, null if this version has none with this name.
+		 */
+		public Attraction getAttraction(String attractionName) {
+			return byName.get(attractionName);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interner of attraction names into small integer ids.
+ * <p>
+ * A name gets the next free id the first time it is interned and keeps it for
+ * the life of the process, whatever the {@code Attraction} instance or the
+ * attraction index it comes from: rewards are granted per attraction name, so
+ * the ids can index the bitsets of rewarded attractions directly. The ids are
+ * dense, starting at zero, and only grow with the number of distinct names.
+ *
+ * @author Aitor
+ */
+public final class AttractionIds {
+
+	/**
+	 * Id returned by {@link #find(String)} for a name never interned.
+	 */
+	public static final int UNKNOWN = -1;
+
+	private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<>();
+
+	private AttractionIds() {
+	}
+
+	/**
+	 * Get the id of an attraction name, allocating it if needed.
+	 *
+	 * @param attractionName
+	 *            Name of the attraction.
+	 * @return Id of the name.
+	 */
+	public static int intern(String attractionName) {
+		Integer id = IDS.get(attractionName);
+		if (id != null) {
+			return id;
+		}
+		// names are added one at a time, so the size is the next free id
+		synchronized (IDS) {
+			return IDS.computeIfAbsent(attractionName, name -> IDS.size());
+		}
+	}
+
+	/**
+	 * Get the id of an attraction name without allocating one.
+	 *
+	 * @param attractionName
+	 *            Name of the attraction.
+	 * @return Id of the name, {@link #UNKNOWN} if it was never interned.
+	 */
+	public static int find(String attractionName) {
+		Integer id = IDS.get(attractionName);
+		return id == null ? UNKNOWN : id;
+	}
+}
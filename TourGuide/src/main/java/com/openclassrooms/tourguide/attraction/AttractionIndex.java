@@ -0,0 +1,361 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Immutable latitude/longitude grid over the attractions.
+ * <p>
+ * Each attraction is bucketed into a cell of {@code cellDegrees} x
+ * {@code cellDegrees}. A radius query first computes the great-circle bounding
+ * box of the search circle, visits only the cells overlapping it and checks
+ * the attractions found there with the {@link DistanceEngine}.
+ *
+ * @author Aitor
+ */
+public class AttractionIndex {
+
+	/**
+	 * Statute miles per degree of great-circle arc (60 nautical miles per degree).
+	 */
+	public static final double MILES_PER_DEGREE = 60 * 1.15077945;
+
+	/**
+	 * Default size of a grid cell in degrees.
+	 */
+	public static final double DEFAULT_CELL_DEGREES = 1.0;
+
+	/**
+	 * Padding added to the bounding box to absorb floating point rounding.
+	 */
+	private static final double EPSILON_DEGREES = 1e-9;
+
+	private final List<Attraction> attractions;
+	private final DistanceEngine distanceEngine;
+	private final double cellDegrees;
+	private final int rows;
+	private final int columns;
+	private final Map<Integer, int[]> cells;
+	private final int[] attractionIds;
+
+	/**
+	 * Builds the index with the default cell size.
+	 *
+	 * @param attractions
+	 *            Attractions to index.
+	 */
+	public AttractionIndex(List<Attraction> attractions) {
+		this(attractions, DEFAULT_CELL_DEGREES);
+	}
+
+	/**
+	 * Builds the index.
+	 *
+	 * @param attractions
+	 *            Attractions to index.
+	 * @param cellDegrees
+	 *            Size of a grid cell in degrees.
+	 */
+	public AttractionIndex(List<Attraction> attractions, double cellDegrees) {
+		if (cellDegrees <= 0 || cellDegrees > 180) {
+			throw new IllegalArgumentException("cellDegrees must be in (0, 180]: " + cellDegrees);
+		}
+		this.attractions = Collections.unmodifiableList(new ArrayList<>(attractions));
+		this.distanceEngine = new DistanceEngine(this.attractions);
+		this.attractionIds = this.attractions.stream().mapToInt(a -> AttractionIds.intern(a.attractionName))
+				.toArray();
+		this.cellDegrees = cellDegrees;
+		this.rows = (int) Math.ceil(180 / cellDegrees);
+		this.columns = (int) Math.ceil(360 / cellDegrees);
+
+		Map<Integer, List<Integer>> buckets = new HashMap<>();
+		for (int i = 0; i < this.attractions.size(); i++) {
+			Attraction attraction = this.attractions.get(i);
+			buckets.computeIfAbsent(cellOf(attraction.latitude, attraction.longitude), k -> new ArrayList<>())
+					.add(i);
+		}
+		Map<Integer, int[]> frozen = new HashMap<>();
+		buckets.forEach((cell, list) -> frozen.put(cell, list.stream().mapToInt(Integer::intValue).toArray()));
+		this.cells = frozen;
+	}
+
+	/**
+	 * Get the indexed attractions.
+	 *
+	 * @return Unmodifiable list of the indexed attractions.
+	 */
+	public List<Attraction> getAttractions() {
+		return attractions;
+	}
+
+	/**
+	 * Get the distance engine over the indexed attractions, in the same order
+	 * as {@link #getAttractions()}.
+	 *
+	 * @return Distance engine.
+	 */
+	public DistanceEngine getDistanceEngine() {
+		return distanceEngine;
+	}
+
+	/**
+	 * Get the id of an indexed attraction in {@link AttractionIds}.
+	 *
+	 * @param attraction
+	 *            Index of the attraction in {@link #getAttractions()}.
+	 * @return Id of the attraction, interned when the index was built.
+	 */
+	public int getAttractionId(int attraction) {
+		return attractionIds[attraction];
+	}
+
+	/**
+	 * Get the attractions within the given radius of a location.
+	 *
+	 * @param location
+	 *            Center of the search.
+	 * @param radiusMiles
+	 *            Search radius in miles.
+	 * @return Attractions whose distance to the location is not greater than the
+	 *         radius.
+	 */
+	public List<Attraction> within(Location location, double radiusMiles) {
+		List<Attraction> result = new ArrayList<>();
+		scanWithin(location, radiusMiles, i -> result.add(attractions.get(i)));
+		return result;
+	}
+
+	/**
+	 * Get the indexes of the attractions within the given radius of a location.
+	 *
+	 * @param location
+	 *            Center of the search.
+	 * @param radiusMiles
+	 *            Search radius in miles.
+	 * @return Indexes, in {@link #getAttractions()}, of the attractions whose
+	 *         distance to the location is not greater than the radius.
+	 */
+	public int[] indexesWithin(Location location, double radiusMiles) {
+		IntStream.Builder result = IntStream.builder();
+		scanWithin(location, radiusMiles, result);
+		return result.build().toArray();
+	}
+
+	private void scanWithin(Location location, double radiusMiles, IntConsumer result) {
+		DistanceEngine.Point point = DistanceEngine.point(location);
+		double threshold = DistanceEngine.threshold(radiusMiles);
+		BoundingBox box = BoundingBox.around(location, radiusMiles);
+		if (box == null || visitedCells(box) > attractions.size()) {
+			// the box is so wide that scanning every attraction is cheaper
+			for (int i = 0; i < attractions.size(); i++) {
+				if (distanceEngine.isWithin(i, point, threshold)) {
+					result.accept(i);
+				}
+			}
+			return;
+		}
+		int firstRow = row(box.minLatitude);
+		int lastRow = row(box.maxLatitude);
+		int firstColumn = column(box.minLongitude);
+		int columnCount = box.fullLongitude ? columns
+				: Math.min(columns, column(box.maxLongitude) - firstColumn + 1);
+		for (int r = firstRow; r <= lastRow; r++) {
+			for (int c = 0; c < columnCount; c++) {
+				int[] bucket = cells.get(r * columns + Math.floorMod(firstColumn + c, columns));
+				if (bucket == null) {
+					continue;
+				}
+				for (int i : bucket) {
+					if (distanceEngine.isWithin(i, point, threshold)) {
+						result.accept(i);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the attractions nearest to a location, nearest first.
+	 * <p>
+	 * The attractions are scanned once through a bounded heap of size k, which
+	 * costs O(A log k) cosine evaluations and no inverse trigonometry. Nothing
+	 * shared is sorted or mutated.
+	 *
+	 * @param location
+	 *            Location to search from.
+	 * @param k
+	 *            Number of attractions to return.
+	 * @return Indexes, in {@link #getAttractions()}, of the min(k, size)
+	 *         nearest attractions.
+	 */
+	public int[] nearest(Location location, int k) {
+		int size = Math.min(k, attractions.size());
+		if (size <= 0) {
+			return new int[0];
+		}
+		DistanceEngine.Point point = DistanceEngine.point(location);
+		// min-heap on the cosine: the root is the farthest of the nearest seen so far
+		int[] heap = new int[size];
+		double[] cosines = new double[size];
+		int count = 0;
+		for (int i = 0; i < attractions.size(); i++) {
+			double cos = distanceEngine.cosAngle(i, point);
+			if (count < size) {
+				heap[count] = i;
+				cosines[count] = cos;
+				siftUp(heap, cosines, count++);
+			} else if (cos > cosines[0]) {
+				heap[0] = i;
+				cosines[0] = cos;
+				siftDown(heap, cosines, size);
+			}
+		}
+		// pop the farthest first to fill the result from the end
+		int[] result = new int[size];
+		for (int n = size; n > 0; n--) {
+			result[n - 1] = heap[0];
+			heap[0] = heap[n - 1];
+			cosines[0] = cosines[n - 1];
+			siftDown(heap, cosines, n - 1);
+		}
+		return result;
+	}
+
+	private static void siftUp(int[] heap, double[] cosines, int child) {
+		while (child > 0) {
+			int parent = (child - 1) >>> 1;
+			if (cosines[parent] <= cosines[child]) {
+				return;
+			}
+			swap(heap, cosines, parent, child);
+			child = parent;
+		}
+	}
+
+	private static void siftDown(int[] heap, double[] cosines, int size) {
+		int parent = 0;
+		while (true) {
+			int child = 2 * parent + 1;
+			if (child >= size) {
+				return;
+			}
+			if (child + 1 < size && cosines[child + 1] < cosines[child]) {
+				child++;
+			}
+			if (cosines[parent] <= cosines[child]) {
+				return;
+			}
+			swap(heap, cosines, parent, child);
+			parent = child;
+		}
+	}
+
+	private static void swap(int[] heap, double[] cosines, int i, int j) {
+		int index = heap[i];
+		heap[i] = heap[j];
+		heap[j] = index;
+		double cos = cosines[i];
+		cosines[i] = cosines[j];
+		cosines[j] = cos;
+	}
+
+	/**
+	 * Check if an attraction, indexed or not, is within the given radius of a
+	 * location.
+	 *
+	 * @param attraction
+	 *            Attraction to check.
+	 * @param location
+	 *            Location to check.
+	 * @param radiusMiles
+	 *            Radius in miles.
+	 * @return true if the distance is not greater than the radius.
+	 */
+	public boolean isWithin(Location attraction, Location location, double radiusMiles) {
+		return DistanceEngine.isWithin(attraction, location, radiusMiles);
+	}
+
+	/**
+	 * Get the grid cell of a location.
+	 *
+	 * @param location
+	 *            Location to locate.
+	 * @return Number of the cell, unique within this index.
+	 */
+	public int cellOf(Location location) {
+		return cellOf(location.latitude, location.longitude);
+	}
+
+	private int visitedCells(BoundingBox box) {
+		int visitedRows = row(box.maxLatitude) - row(box.minLatitude) + 1;
+		int visitedColumns = box.fullLongitude ? columns
+				: Math.min(columns, column(box.maxLongitude) - column(box.minLongitude) + 1);
+		return visitedRows * visitedColumns;
+	}
+
+	private int cellOf(double latitude, double longitude) {
+		return row(latitude) * columns + Math.floorMod(column(longitude), columns);
+	}
+
+	private int row(double latitude) {
+		int row = (int) Math.floor((latitude + 90) / cellDegrees);
+		return Math.max(0, Math.min(rows - 1, row));
+	}
+
+	private int column(double longitude) {
+		return (int) Math.floor((longitude + 180) / cellDegrees);
+	}
+
+	/**
+	 * Latitude/longitude box enclosing every point within a great-circle radius.
+	 */
+	static final class BoundingBox {
+		final double minLatitude;
+		final double maxLatitude;
+		final double minLongitude;
+		final double maxLongitude;
+		final boolean fullLongitude;
+
+		private BoundingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+				boolean fullLongitude) {
+			this.minLatitude = minLatitude;
+			this.maxLatitude = maxLatitude;
+			this.minLongitude = minLongitude;
+			this.maxLongitude = maxLongitude;
+			this.fullLongitude = fullLongitude;
+		}
+
+		/**
+		 * Compute the box around a location.
+		 *
+		 * @return the box, or null if the radius covers the whole sphere.
+		 */
+		static BoundingBox around(Location location, double radiusMiles) {
+			double radiusDegrees = radiusMiles / MILES_PER_DEGREE;
+			if (radiusDegrees >= 180) {
+				return null;
+			}
+			double minLatitude = location.latitude - radiusDegrees - EPSILON_DEGREES;
+			double maxLatitude = location.latitude + radiusDegrees + EPSILON_DEGREES;
+			if (minLatitude <= -90 || maxLatitude >= 90) {
+				// the circle contains a pole: every longitude is reachable
+				return new BoundingBox(Math.max(-90, minLatitude), Math.min(90, maxLatitude), -180, 180, true);
+			}
+			double ratio = Math.sin(Math.toRadians(radiusDegrees)) / Math.cos(Math.toRadians(location.latitude));
+			if (ratio >= 1) {
+				return new BoundingBox(minLatitude, maxLatitude, -180, 180, true);
+			}
+			double deltaLongitude = Math.toDegrees(Math.asin(ratio)) + EPSILON_DEGREES;
+			return new BoundingBox(minLatitude, maxLatitude, location.longitude - deltaLongitude,
+					location.longitude + deltaLongitude, false);
+		}
+	}
+}
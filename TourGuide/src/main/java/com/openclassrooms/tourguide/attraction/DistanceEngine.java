@@ -0,0 +1,200 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.List;
+
+import gpsUtil.location.Location;
+
+/**
+ * Great-circle distances between a fixed set of points (the attractions) and
+ * arbitrary locations.
+ * <p>
+ * The sine and cosine of the latitude and longitude of every point are
+ * computed once and kept in primitive arrays. A location is converted once
+ * into a {@link Point}; the cosine of its angle to any indexed point then costs
+ * a handful of multiplications. Threshold checks compare that cosine with the
+ * cosine of the radius (equivalently, the chord length), so no inverse
+ * trigonometry is needed to accept or reject a point; {@code acos} is only
+ * evaluated when the distance in miles is actually requested.
+ * <p>
+ * The result is the spherical law of cosines used by
+ * {@code RewardsService.getDistance}, rearranged as a dot product of unit
+ * vectors. Both agree within {@link #TOLERANCE_MILES}; the largest differences
+ * appear for nearly identical points, where {@code acos} amplifies rounding
+ * errors. Unlike the original formula, coincident points give 0 instead of NaN.
+ *
+ * @author Aitor
+ */
+public class DistanceEngine {
+
+	/**
+	 * Statute miles per radian of great-circle arc.
+	 */
+	public static final double MILES_PER_RADIAN = Math.toDegrees(AttractionIndex.MILES_PER_DEGREE);
+
+	/**
+	 * Maximum difference with {@code RewardsService.getDistance}, in miles.
+	 */
+	public static final double TOLERANCE_MILES = 1e-3;
+
+	private final double[] sinLatitude;
+	private final double[] cosLatitude;
+	private final double[] sinLongitude;
+	private final double[] cosLongitude;
+
+	/**
+	 * Precompute the trigonometry of the points.
+	 *
+	 * @param points
+	 *            Points to measure distances from.
+	 */
+	public DistanceEngine(List<? extends Location> points) {
+		int size = points.size();
+		sinLatitude = new double[size];
+		cosLatitude = new double[size];
+		sinLongitude = new double[size];
+		cosLongitude = new double[size];
+		for (int i = 0; i < size; i++) {
+			Location point = points.get(i);
+			double latitude = Math.toRadians(point.latitude);
+			double longitude = Math.toRadians(point.longitude);
+			sinLatitude[i] = Math.sin(latitude);
+			cosLatitude[i] = Math.cos(latitude);
+			sinLongitude[i] = Math.sin(longitude);
+			cosLongitude[i] = Math.cos(longitude);
+		}
+	}
+
+	/**
+	 * Get the number of points.
+	 *
+	 * @return Number of points.
+	 */
+	public int size() {
+		return sinLatitude.length;
+	}
+
+	/**
+	 * Cosine of the great-circle angle between a point and a location.
+	 *
+	 * @param index
+	 *            Index of the point.
+	 * @param point
+	 *            Location converted with {@link #point(Location)}.
+	 * @return Cosine of the angle, between -1 and 1.
+	 */
+	public double cosAngle(int index, Point point) {
+		// cos(lon1 - lon2) expanded so that only precomputed values are used
+		double cosDeltaLongitude = cosLongitude[index] * point.cosLongitude
+				+ sinLongitude[index] * point.sinLongitude;
+		double cos = sinLatitude[index] * point.sinLatitude
+				+ cosLatitude[index] * point.cosLatitude * cosDeltaLongitude;
+		return Math.max(-1, Math.min(1, cos));
+	}
+
+	/**
+	 * Check a point against a threshold computed by {@link #threshold(double)},
+	 * without inverse trigonometry.
+	 *
+	 * @param index
+	 *            Index of the point.
+	 * @param point
+	 *            Location converted with {@link #point(Location)}.
+	 * @param threshold
+	 *            Threshold for the radius.
+	 * @return true if the distance is not greater than the radius.
+	 */
+	public boolean isWithin(int index, Point point, double threshold) {
+		return cosAngle(index, point) >= threshold;
+	}
+
+	/**
+	 * Distance between a point and a location.
+	 *
+	 * @param index
+	 *            Index of the point.
+	 * @param point
+	 *            Location converted with {@link #point(Location)}.
+	 * @return Distance in statute miles.
+	 */
+	public double distance(int index, Point point) {
+		return Math.acos(cosAngle(index, point)) * MILES_PER_RADIAN;
+	}
+
+	/**
+	 * Convert a location for the queries of this engine.
+	 *
+	 * @param location
+	 *            Location to convert.
+	 * @return Converted location.
+	 */
+	public static Point point(Location location) {
+		return new Point(location.latitude, location.longitude);
+	}
+
+	/**
+	 * Threshold to pass to {@link #isWithin(int, Point, double)}: the cosine of
+	 * the angle covered by the radius. A radius of half the circumference or more
+	 * matches every point.
+	 *
+	 * @param radiusMiles
+	 *            Radius in miles.
+	 * @return Threshold for the radius.
+	 */
+	public static double threshold(double radiusMiles) {
+		double angle = radiusMiles / MILES_PER_RADIAN;
+		return angle >= Math.PI ? Double.NEGATIVE_INFINITY : Math.cos(angle);
+	}
+
+	/**
+	 * Check if two arbitrary locations are within a radius of each other.
+	 *
+	 * @param a
+	 *            First location.
+	 * @param b
+	 *            Second location.
+	 * @param radiusMiles
+	 *            Radius in miles.
+	 * @return true if the distance is not greater than the radius.
+	 */
+	public static boolean isWithin(Location a, Location b, double radiusMiles) {
+		return point(a).cosAngle(point(b)) >= threshold(radiusMiles);
+	}
+
+	/**
+	 * Distance between two arbitrary locations.
+	 *
+	 * @param a
+	 *            First location.
+	 * @param b
+	 *            Second location.
+	 * @return Distance in statute miles.
+	 */
+	public static double distance(Location a, Location b) {
+		return Math.acos(point(a).cosAngle(point(b))) * MILES_PER_RADIAN;
+	}
+
+	/**
+	 * A location with its trigonometry computed.
+	 */
+	public static final class Point {
+		final double sinLatitude;
+		final double cosLatitude;
+		final double sinLongitude;
+		final double cosLongitude;
+
+		Point(double latitude, double longitude) {
+			double latitudeRadians = Math.toRadians(latitude);
+			double longitudeRadians = Math.toRadians(longitude);
+			this.sinLatitude = Math.sin(latitudeRadians);
+			this.cosLatitude = Math.cos(latitudeRadians);
+			this.sinLongitude = Math.sin(longitudeRadians);
+			this.cosLongitude = Math.cos(longitudeRadians);
+		}
+
+		double cosAngle(Point other) {
+			double cosDeltaLongitude = cosLongitude * other.cosLongitude + sinLongitude * other.sinLongitude;
+			double cos = sinLatitude * other.sinLatitude + cosLatitude * other.cosLatitude * cosDeltaLongitude;
+			return Math.max(-1, Math.min(1, cos));
+		}
+	}
+}
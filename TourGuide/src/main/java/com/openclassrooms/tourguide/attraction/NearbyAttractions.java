@@ -0,0 +1,113 @@
+package com.openclassrooms.tourguide.attraction;
+
+import gpsUtil.location.Location;
+
+/**
+ * Immutable snapshot of the attractions nearest to a fix of a user.
+ * <p>
+ * The attractions are stored as their indexes in
+ * {@link AttractionIndex#getAttractions()}, nearest first, along with their
+ * distances in single precision, so that a snapshot of five attractions takes
+ * about a hundred bytes. The snapshot also records the fix it was computed
+ * from: its position, its time and the sequence number just after it in the
+ * location history of the user.
+ *
+ * @author Aitor
+ */
+public final class NearbyAttractions {
+
+	private final AttractionIndex index;
+	private final int[] attractions;
+	private final float[] distances;
+	private final double latitude;
+	private final double longitude;
+	private final long sequence;
+	private final long timeMillis;
+
+	private NearbyAttractions(AttractionIndex index, int[] attractions, float[] distances, double latitude,
+			double longitude, long sequence, long timeMillis) {
+		this.index = index;
+		this.attractions = attractions;
+		this.distances = distances;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.sequence = sequence;
+		this.timeMillis = timeMillis;
+	}
+
+	/**
+	 * Compute the attractions nearest to a fix.
+	 *
+	 * @param index
+	 *            Index of the attractions.
+	 * @param latitude
+	 *            Latitude of the fix.
+	 * @param longitude
+	 *            Longitude of the fix.
+	 * @param count
+	 *            Number of attractions to keep.
+	 * @param sequence
+	 *            Sequence number following the fix in the location history.
+	 * @param timeMillis
+	 *            Time of the fix.
+	 * @return Snapshot of the min(count, size) nearest attractions.
+	 */
+	public static NearbyAttractions of(AttractionIndex index, double latitude, double longitude, int count,
+			long sequence, long timeMillis) {
+		Location location = new Location(latitude, longitude);
+		int[] nearest = index.nearest(location, count);
+		DistanceEngine.Point point = DistanceEngine.point(location);
+		float[] distances = new float[nearest.length];
+		for (int i = 0; i < nearest.length; i++) {
+			distances[i] = (float) index.getDistanceEngine().distance(nearest[i], point);
+		}
+		return new NearbyAttractions(index, nearest, distances, latitude, longitude, sequence, timeMillis);
+	}
+
+	/**
+	 * Get the index the attractions of this snapshot refer to.
+	 *
+	 * @return Index of the attractions.
+	 */
+	public AttractionIndex getIndex() {
+		return index;
+	}
+
+	public int size() {
+		return attractions.length;
+	}
+
+	/**
+	 * Get the index of an attraction in {@link AttractionIndex#getAttractions()}.
+	 *
+	 * @param rank
+	 *            Rank of the attraction, 0 for the nearest.
+	 * @return Index of the attraction.
+	 */
+	public int getAttraction(int rank) {
+		return attractions[rank];
+	}
+
+	/**
+	 * Get the distance of an attraction.
+	 *
+	 * @param rank
+	 *            Rank of the attraction, 0 for the nearest.
+	 * @return Distance in statute miles.
+	 */
+	public float getDistance(int rank) {
+		return distances[rank];
+	}
+
+	public Location getLocation() {
+		return new Location(latitude, longitude);
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getTimeMillis() {
+		return timeMillis;
+	}
+}
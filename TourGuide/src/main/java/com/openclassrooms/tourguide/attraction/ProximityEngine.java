@@ -0,0 +1,177 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.function.IntPredicate;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Geofence-style proximity detection between the fixes of a user and the
+ * attractions.
+ * <p>
+ * When a fix is evaluated, every attraction within the proximity buffer that
+ * the caller does not already handle is reported as entered, and those a
+ * little farther, within the movement threshold of the buffer, as near. The
+ * evaluation also returns a {@link Region} around the fix: its safe radius is
+ * the movement threshold, reduced to the margin between the buffer and the
+ * nearest attraction that was not entered. By the triangle inequality, no fix
+ * within that radius can bring a new attraction into the buffer, so the fixes
+ * that stay inside the region, in the same cell of the attraction index, are
+ * skipped with a single distance check.
+ * <p>
+ * The region assumes that the entered attractions, and the ones the caller
+ * excluded, will never be reported again: it must be dropped if handling them
+ * fails. A movement threshold of zero disables the skipping.
+ *
+ * @author Aitor
+ */
+public class ProximityEngine {
+
+	/**
+	 * Default movement threshold in miles.
+	 */
+	public static final double DEFAULT_MOVEMENT_THRESHOLD_MILES = 5;
+
+	private final double movementThresholdMiles;
+
+	/**
+	 * Create an engine with the default movement threshold.
+	 */
+	public ProximityEngine() {
+		this(DEFAULT_MOVEMENT_THRESHOLD_MILES);
+	}
+
+	/**
+	 * Create an engine.
+	 *
+	 * @param movementThresholdMiles
+	 *            Largest distance a user can move from an evaluated fix without
+	 *            being evaluated again.
+	 */
+	public ProximityEngine(double movementThresholdMiles) {
+		if (!(movementThresholdMiles >= 0)) {
+			throw new IllegalArgumentException("Invalid movement threshold: " + movementThresholdMiles);
+		}
+		this.movementThresholdMiles = movementThresholdMiles;
+	}
+
+	public double getMovementThresholdMiles() {
+		return movementThresholdMiles;
+	}
+
+	/**
+	 * Check if a fix can be skipped.
+	 *
+	 * @param region
+	 *            Region of the last evaluated fix, or null.
+	 * @param index
+	 *            Current attraction index.
+	 * @param bufferMiles
+	 *            Current proximity buffer.
+	 * @param location
+	 *            Fix to check.
+	 * @return true if the region was computed with the same index and buffer
+	 *         and the fix is inside it.
+	 */
+	public boolean isInside(Region region, AttractionIndex index, double bufferMiles, Location location) {
+		return region != null && region.index == index && region.bufferMiles == bufferMiles
+				&& region.safeRadiusMiles > 0 && region.cell == index.cellOf(location)
+				&& region.point.cosAngle(DistanceEngine.point(location)) >= region.threshold;
+	}
+
+	/**
+	 * Evaluate a fix.
+	 *
+	 * @param index
+	 *            Attraction index.
+	 * @param bufferMiles
+	 *            Proximity buffer.
+	 * @param location
+	 *            Fix to evaluate.
+	 * @param handled
+	 *            Ids, in {@link AttractionIds}, of the attractions already
+	 *            rewarded or requested, never reported.
+	 * @param listener
+	 *            Receiver of the enter and near events.
+	 * @return Region around the fix.
+	 */
+	public Region evaluate(AttractionIndex index, double bufferMiles, Location location,
+			IntPredicate handled, ProximityListener listener) {
+		double safeRadius = movementThresholdMiles;
+		for (int i : index.indexesWithin(location, bufferMiles + movementThresholdMiles)) {
+			if (handled.test(index.getAttractionId(i))) {
+				continue;
+			}
+			Attraction attraction = index.getAttractions().get(i);
+			if (DistanceEngine.isWithin(attraction, location, bufferMiles)) {
+				listener.onEnter(attraction);
+			} else {
+				double distance = DistanceEngine.distance(attraction, location);
+				// keep clear of the rounding of the buffer check
+				safeRadius = Math.min(safeRadius, distance - bufferMiles - DistanceEngine.TOLERANCE_MILES);
+				listener.onNear(attraction, distance);
+			}
+		}
+		return new Region(index, bufferMiles, location, index.cellOf(location), Math.max(0, safeRadius));
+	}
+
+	/**
+	 * Receiver of the proximity events of an evaluation.
+	 */
+	@FunctionalInterface
+	public interface ProximityListener {
+
+		/**
+		 * An attraction is within the proximity buffer of the fix.
+		 *
+		 * @param attraction
+		 *            Entered attraction.
+		 */
+		void onEnter(Attraction attraction);
+
+		/**
+		 * An attraction is outside the proximity buffer, but within the
+		 * movement threshold of it.
+		 *
+		 * @param attraction
+		 *            Near attraction.
+		 * @param distanceMiles
+		 *            Distance between the fix and the attraction.
+		 */
+		default void onNear(Attraction attraction, double distanceMiles) {
+		}
+	}
+
+	/**
+	 * Immutable area around an evaluated fix in which the fixes need no new
+	 * evaluation.
+	 */
+	public static final class Region {
+		private final AttractionIndex index;
+		private final double bufferMiles;
+		private final Location center;
+		private final int cell;
+		private final double safeRadiusMiles;
+		// trigonometry of the check, computed once
+		private final DistanceEngine.Point point;
+		private final double threshold;
+
+		Region(AttractionIndex index, double bufferMiles, Location center, int cell, double safeRadiusMiles) {
+			this.index = index;
+			this.bufferMiles = bufferMiles;
+			this.center = center;
+			this.cell = cell;
+			this.safeRadiusMiles = safeRadiusMiles;
+			this.point = DistanceEngine.point(center);
+			this.threshold = DistanceEngine.threshold(safeRadiusMiles);
+		}
+
+		public Location getCenter() {
+			return center;
+		}
+
+		public double getSafeRadiusMiles() {
+			return safeRadiusMiles;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.NearbyAttractions;
+import com.openclassrooms.tourguide.event.LocationEventHandler;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.VisitedLocationLog;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Materialized nearest attractions of every user.
+ * <p>
+ * Subscribed to the location events, the cache computes the
+ * {@link NearbyAttractions} of the last fix of every user who got new fixes
+ * and stores it on the user, replacing the previous one: memory stays at one
+ * small snapshot per user. Reading it is then a field access, without any
+ * distance computation or GPS call.
+ * <p>
+ * A snapshot that does not reflect the last fix yet, because its event is
+ * still pending, is served as long as that fix is less than
+ * {@code maxStaleness} newer than the one of the snapshot; past that, or if
+ * the attraction index changed, the snapshot is computed again from the last
+ * fix on the reading thread.
+ *
+ * @author Aitor
+ */
+public class NearbyAttractionsCache implements LocationEventHandler {
+
+	/**
+	 * Default time by which a served snapshot may lag the last fix.
+	 */
+	public static final Duration DEFAULT_MAX_STALENESS = Duration.ofMinutes(1);
+
+	private final Supplier<AttractionIndex> attractionIndex;
+	private final int count;
+	private final long maxStalenessMillis;
+	private final Counter computedOnEvent;
+	private final Counter computedOnRequest;
+
+	/**
+	 * Create a cache with the default staleness.
+	 *
+	 * @param attractionIndex
+	 *            Source of the current attraction index.
+	 * @param count
+	 *            Number of attractions of a snapshot.
+	 */
+	public NearbyAttractionsCache(Supplier<AttractionIndex> attractionIndex, int count) {
+		this(attractionIndex, count, DEFAULT_MAX_STALENESS, Metrics.globalRegistry);
+	}
+
+	/**
+	 * Create a cache publishing its metrics to a given registry.
+	 *
+	 * @param attractionIndex
+	 *            Source of the current attraction index.
+	 * @param count
+	 *            Number of attractions of a snapshot.
+	 * @param maxStaleness
+	 *            Time by which a served snapshot may lag the last fix; zero to
+	 *            always reflect it.
+	 * @param meterRegistry
+	 *            Registry of the number of computed snapshots.
+	 */
+	public NearbyAttractionsCache(Supplier<AttractionIndex> attractionIndex, int count, Duration maxStaleness,
+			MeterRegistry meterRegistry) {
+		if (count <= 0 || maxStaleness.isNegative()) {
+			throw new IllegalArgumentException(
+					"Invalid nearby attractions settings: count=" + count + ", maxStaleness=" + maxStaleness);
+		}
+		this.attractionIndex = attractionIndex;
+		this.count = count;
+		this.maxStalenessMillis = maxStaleness.toMillis();
+		this.computedOnEvent = Counter.builder(TourGuideMetrics.NEARBY_SNAPSHOTS).tag("source", "event")
+				.description("Nearby attraction snapshots computed").register(meterRegistry);
+		this.computedOnRequest = Counter.builder(TourGuideMetrics.NEARBY_SNAPSHOTS).tag("source", "request")
+				.description("Nearby attraction snapshots computed").register(meterRegistry);
+	}
+
+	/**
+	 * Get the nearest attractions of a user.
+	 *
+	 * @param user
+	 *            User to get the attractions.
+	 * @return Snapshot of the last fix, or of a fix less than the staleness older;
+	 *         null if the user has no location yet.
+	 */
+	public NearbyAttractions get(User user) {
+		VisitedLocationLog.Snapshot history = user.getLocationHistory();
+		if (history.isEmpty()) {
+			return null;
+		}
+		NearbyAttractions nearby = user.getNearbyAttractions();
+		AttractionIndex index = attractionIndex.get();
+		if (nearby != null && nearby.getIndex() == index && isFresh(nearby, history)) {
+			return nearby;
+		}
+		computedOnRequest.increment();
+		return user.setNearbyAttractions(compute(history, index));
+	}
+
+	/**
+	 * Compute the nearest attractions of the last fix of a user and store them
+	 * on the user.
+	 *
+	 * @param user
+	 *            User whose location history changed.
+	 * @return Stored snapshot, null if the user has no location.
+	 */
+	public NearbyAttractions refresh(User user) {
+		VisitedLocationLog.Snapshot history = user.getLocationHistory();
+		if (history.isEmpty()) {
+			return null;
+		}
+		computedOnEvent.increment();
+		return user.setNearbyAttractions(compute(history, attractionIndex.get()));
+	}
+
+	// the snapshots are computed on the thread of the bus: a few hundred cosines per user
+	@Override
+	public CompletableFuture<?> onLocations(List<User> users) {
+		for (User user : users) {
+			refresh(user);
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public Duration getMaxStaleness() {
+		return Duration.ofMillis(maxStalenessMillis);
+	}
+
+	private boolean isFresh(NearbyAttractions nearby, VisitedLocationLog.Snapshot history) {
+		if (nearby.getSequence() == history.getEndSequence()) {
+			return true;
+		}
+		long last = history.getTimeMillis(history.size() - 1);
+		if (last == VisitedLocationLog.NO_TIME || nearby.getTimeMillis() == VisitedLocationLog.NO_TIME) {
+			return false;
+		}
+		return last - nearby.getTimeMillis() < maxStalenessMillis;
+	}
+
+	private NearbyAttractions compute(VisitedLocationLog.Snapshot history, AttractionIndex index) {
+		int last = history.size() - 1;
+		return NearbyAttractions.of(index, history.getLatitude(last), history.getLongitude(last), count,
+				history.getEndSequence(), history.getTimeMillis(last));
+	}
+}
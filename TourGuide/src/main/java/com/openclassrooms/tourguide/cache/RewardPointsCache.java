@@ -0,0 +1,215 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.openclassrooms.tourguide.executor.BoundedExecutor;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * Asynchronous cache in front of {@link RewardCentral}.
+ * <p>
+ * Entries are keyed by attraction and user, expire a fixed time after they
+ * were loaded and are evicted when the cache grows beyond its maximum size.
+ * Concurrent misses on the same key share a single call to RewardCentral,
+ * which runs on the given executor so that callers never block on it.
+ * <p>
+ * The latency of RewardCentral and the cache statistics, under the name
+ * {@code rewardPoints}, are published to the meter registry.
+ *
+ * @author Aitor
+ */
+public class RewardPointsCache {
+
+	/**
+	 * Default time an entry stays in the cache.
+	 */
+	public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(1);
+
+	/**
+	 * Default maximum number of entries.
+	 */
+	public static final long DEFAULT_MAXIMUM_SIZE = 1_000_000;
+
+	private final RewardCentral rewardCentral;
+	private final AsyncLoadingCache<Key, Integer> cache;
+
+	/**
+	 * Create a cache with the default settings, calling RewardCentral on
+	 * virtual threads.
+	 *
+	 * @param rewardCentral
+	 *            Source of the reward points.
+	 */
+	public RewardPointsCache(RewardCentral rewardCentral) {
+		this(rewardCentral, new BoundedExecutor("reward-central", BoundedExecutor.Mode.VIRTUAL, 1000, 100_000,
+				BoundedExecutor.RejectionPolicy.BLOCK), DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param rewardCentral
+	 *            Source of the reward points.
+	 * @param executor
+	 *            Executor calling RewardCentral.
+	 * @param timeToLive
+	 *            Time an entry stays in the cache after it was loaded.
+	 * @param maximumSize
+	 *            Maximum number of entries.
+	 */
+	public RewardPointsCache(RewardCentral rewardCentral, Executor executor, Duration timeToLive, long maximumSize) {
+		this(rewardCentral, executor, timeToLive, maximumSize, Metrics.globalRegistry);
+	}
+
+	/**
+	 * Create a cache publishing its metrics to a given registry.
+	 *
+	 * @param rewardCentral
+	 *            Source of the reward points.
+	 * @param executor
+	 *            Executor calling RewardCentral.
+	 * @param timeToLive
+	 *            Time an entry stays in the cache after it was loaded.
+	 * @param maximumSize
+	 *            Maximum number of entries.
+	 * @param meterRegistry
+	 *            Registry of the RewardCentral latency and cache statistics.
+	 */
+	public RewardPointsCache(RewardCentral rewardCentral, Executor executor, Duration timeToLive, long maximumSize,
+			MeterRegistry meterRegistry) {
+		this.rewardCentral = rewardCentral;
+		Timer latency = TourGuideMetrics.externalCallTimer(meterRegistry, "rewardCentral");
+		this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+				.executor(executor)
+				.expireAfterWrite(timeToLive)
+				.maximumSize(maximumSize)
+				.recordStats()
+				.<Key, Integer>buildAsync(key -> latency.recordCallable(
+						() -> rewardCentral.getAttractionRewardPoints(key.attractionId, key.userId))),
+				"rewardPoints");
+	}
+
+	/**
+	 * Get the reward points of an attraction for a user.
+	 *
+	 * @param attractionId
+	 *            Id of the attraction.
+	 * @param userId
+	 *            Id of the user.
+	 * @return CompletableFuture with the reward points.
+	 */
+	public CompletableFuture<Integer> getRewardPoints(UUID attractionId, UUID userId) {
+		return getRewardPoints(new Key(attractionId, userId));
+	}
+
+	/**
+	 * Get the reward points of a key.
+	 *
+	 * @param key
+	 *            Attraction and user.
+	 * @return CompletableFuture with the reward points.
+	 */
+	public CompletableFuture<Integer> getRewardPoints(Key key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * Get the reward points of many keys in a single lookup: the hits are read
+	 * in one pass and the misses are loaded concurrently, RewardCentral having
+	 * no bulk call.
+	 *
+	 * @param keys
+	 *            Attractions and users.
+	 * @return CompletableFuture with the reward points of every key; it fails
+	 *         if any of them cannot be loaded.
+	 */
+	public CompletableFuture<Map<Key, Integer>> getRewardPoints(Collection<Key> keys) {
+		return cache.getAll(keys);
+	}
+
+	/**
+	 * Get the source of the reward points.
+	 *
+	 * @return RewardCentral client.
+	 */
+	public RewardCentral getRewardCentral() {
+		return rewardCentral;
+	}
+
+	/**
+	 * Get the hit, miss and eviction counters.
+	 *
+	 * @return Snapshot of the cache statistics.
+	 */
+	public CacheStats getStats() {
+		return cache.synchronous().stats();
+	}
+
+	/**
+	 * Get the underlying cache, for instrumentation.
+	 *
+	 * @return Caffeine cache.
+	 */
+	public AsyncLoadingCache<Key, Integer> getCache() {
+		return cache;
+	}
+
+	/**
+	 * Cache key: an attraction and a user.
+	 */
+	public static final class Key {
+		private final UUID attractionId;
+		private final UUID userId;
+
+		Key(UUID attractionId, UUID userId) {
+			this.attractionId = attractionId;
+			this.userId = userId;
+		}
+
+		/**
+		 * Create a key.
+		 *
+		 * @param attractionId
+		 *            Id of the attraction.
+		 * @param userId
+		 *            Id of the user.
+		 * @return Key of the reward points of the attraction for the user.
+		 */
+		public static Key of(UUID attractionId, UUID userId) {
+			return new Key(attractionId, userId);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return attractionId.equals(other.attractionId) && userId.equals(other.userId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(attractionId, userId);
+		}
+	}
+}
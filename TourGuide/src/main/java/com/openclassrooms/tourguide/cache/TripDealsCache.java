@@ -0,0 +1,175 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * Asynchronous cache in front of {@link TripPricer}.
+ * <p>
+ * Entries are keyed by everything the price depends on: the API key, the
+ * user, the numbers of adults and children, the trip duration and the reward
+ * points. A user whose preferences and reward total did not change gets the
+ * same providers until the entry expires; any change makes a new key.
+ * Concurrent misses on the same key share a single call to TripPricer, which
+ * runs on the given executor so that callers never block on it.
+ * <p>
+ * The latency of TripPricer and the cache statistics, under the name
+ * {@code tripDeals}, are published to the meter registry.
+ *
+ * @author Aitor
+ */
+public class TripDealsCache {
+
+	/**
+	 * Default time an entry stays in the cache.
+	 */
+	public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+	/**
+	 * Default maximum number of entries.
+	 */
+	public static final long DEFAULT_MAXIMUM_SIZE = 100_000;
+
+	private final TripPricer tripPricer;
+	private final AsyncLoadingCache<Key, List<Provider>> cache;
+
+	/**
+	 * Create a cache with the default settings.
+	 *
+	 * @param tripPricer
+	 *            Source of the trip deals.
+	 * @param executor
+	 *            Executor calling TripPricer.
+	 */
+	public TripDealsCache(TripPricer tripPricer, Executor executor) {
+		this(tripPricer, executor, DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE, Metrics.globalRegistry);
+	}
+
+	/**
+	 * Create a cache publishing its metrics to a given registry.
+	 *
+	 * @param tripPricer
+	 *            Source of the trip deals.
+	 * @param executor
+	 *            Executor calling TripPricer.
+	 * @param timeToLive
+	 *            Time an entry stays in the cache after it was loaded.
+	 * @param maximumSize
+	 *            Maximum number of entries.
+	 * @param meterRegistry
+	 *            Registry of the TripPricer latency and cache statistics.
+	 */
+	public TripDealsCache(TripPricer tripPricer, Executor executor, Duration timeToLive, long maximumSize,
+			MeterRegistry meterRegistry) {
+		this.tripPricer = tripPricer;
+		Timer latency = TourGuideMetrics.externalCallTimer(meterRegistry, "tripPricer");
+		this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+				.executor(executor)
+				.expireAfterWrite(timeToLive)
+				.maximumSize(maximumSize)
+				.recordStats()
+				.<Key, List<Provider>>buildAsync(key -> List.copyOf(latency.recordCallable(
+						() -> tripPricer.getPrice(key.apiKey, key.userId, key.adults, key.children, key.nightsStay,
+								key.rewardPoints)))),
+				"tripDeals");
+	}
+
+	/**
+	 * Get the trip deals of a user, with the arguments of
+	 * {@link TripPricer#getPrice(String, UUID, int, int, int, int)}.
+	 *
+	 * @param apiKey
+	 *            Key of the TripPricer API.
+	 * @param userId
+	 *            Id of the user.
+	 * @param adults
+	 *            Number of adults.
+	 * @param children
+	 *            Number of children.
+	 * @param nightsStay
+	 *            Duration of the trip.
+	 * @param rewardPoints
+	 *            Reward points of the user.
+	 * @return CompletableFuture with the providers, shared by concurrent
+	 *         identical requests.
+	 */
+	public CompletableFuture<List<Provider>> getPrice(String apiKey, UUID userId, int adults, int children,
+			int nightsStay, int rewardPoints) {
+		return cache.get(new Key(apiKey, userId, adults, children, nightsStay, rewardPoints));
+	}
+
+	/**
+	 * Get the source of the trip deals.
+	 *
+	 * @return TripPricer client.
+	 */
+	public TripPricer getTripPricer() {
+		return tripPricer;
+	}
+
+	/**
+	 * Get the hit, miss and eviction counters.
+	 *
+	 * @return Snapshot of the cache statistics.
+	 */
+	public CacheStats getStats() {
+		return cache.synchronous().stats();
+	}
+
+	/**
+	 * Cache key: the arguments of a TripPricer call.
+	 */
+	public static final class Key {
+		private final String apiKey;
+		private final UUID userId;
+		private final int adults;
+		private final int children;
+		private final int nightsStay;
+		private final int rewardPoints;
+
+		Key(String apiKey, UUID userId, int adults, int children, int nightsStay, int rewardPoints) {
+			this.apiKey = apiKey;
+			this.userId = userId;
+			this.adults = adults;
+			this.children = children;
+			this.nightsStay = nightsStay;
+			this.rewardPoints = rewardPoints;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return adults == other.adults && children == other.children && nightsStay == other.nightsStay
+					&& rewardPoints == other.rewardPoints && userId.equals(other.userId)
+					&& apiKey.equals(other.apiKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(apiKey, userId, adults, children, nightsStay, rewardPoints);
+		}
+	}
+}
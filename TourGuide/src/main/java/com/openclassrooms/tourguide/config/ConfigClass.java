@@ -1,10 +1,75 @@
 package com.openclassrooms.tourguide.config;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.EnableAsync;
 
+import com.openclassrooms.tourguide.executor.BoundedExecutor;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+
+/**
+ * Executors of the application, one per workload. Each one is bounded, runs on
+ * virtual or platform threads and, when the context closes, drains its
+ * submitted tasks for up to {@code tourguide.executors.drain-timeout}. The
+ * services are closed before the executors they use, so in-flight work can
+ * complete.
+ */
 @Configuration
-@EnableAsync
 public class ConfigClass {
 
+	@Value("${tourguide.executors.drain-timeout:30s}")
+	private Duration drainTimeout;
+
+	@Bean
+	public BoundedExecutor gpsExecutor(
+			@Value("${tourguide.gps.executor.mode:VIRTUAL}") BoundedExecutor.Mode mode,
+			@Value("${tourguide.gps.executor.concurrency:500}") int concurrency,
+			@Value("${tourguide.gps.executor.queue-capacity:100000}") int queueCapacity,
+			@Value("${tourguide.gps.executor.rejection-policy:BLOCK}") BoundedExecutor.RejectionPolicy rejectionPolicy) {
+		return new BoundedExecutor("gps", mode, concurrency, queueCapacity, rejectionPolicy, drainTimeout);
+	}
+
+	@Bean
+	public BoundedExecutor rewardExecutor(
+			@Value("${tourguide.rewards.executor.mode:VIRTUAL}") BoundedExecutor.Mode mode,
+			@Value("${tourguide.rewards.executor.concurrency:2000}") int concurrency,
+			@Value("${tourguide.rewards.executor.queue-capacity:100000}") int queueCapacity,
+			@Value("${tourguide.rewards.executor.rejection-policy:BLOCK}") BoundedExecutor.RejectionPolicy rejectionPolicy) {
+		return new BoundedExecutor("rewards", mode, concurrency, queueCapacity, rejectionPolicy, drainTimeout);
+	}
+
+	@Bean
+	public BoundedExecutor rewardCentralExecutor(
+			@Value("${tourguide.rewards.central.concurrency:1000}") int concurrency) {
+		return new BoundedExecutor("reward-central", BoundedExecutor.Mode.VIRTUAL, concurrency, 100_000,
+				BoundedExecutor.RejectionPolicy.BLOCK, drainTimeout);
+	}
+
+	@Bean
+	public BoundedExecutor pricingExecutor(
+			@Value("${tourguide.pricing.executor.mode:VIRTUAL}") BoundedExecutor.Mode mode,
+			@Value("${tourguide.pricing.executor.concurrency:200}") int concurrency,
+			@Value("${tourguide.pricing.executor.queue-capacity:10000}") int queueCapacity,
+			@Value("${tourguide.pricing.executor.rejection-policy:BLOCK}") BoundedExecutor.RejectionPolicy rejectionPolicy) {
+		return new BoundedExecutor("pricing", mode, concurrency, queueCapacity, rejectionPolicy, drainTimeout);
+	}
+
+	@Bean
+	public BoundedExecutor requestExecutor(
+			@Value("${tourguide.request.executor.mode:VIRTUAL}") BoundedExecutor.Mode mode,
+			@Value("${tourguide.request.executor.concurrency:1000}") int concurrency,
+			@Value("${tourguide.request.executor.queue-capacity:10000}") int queueCapacity,
+			@Value("${tourguide.request.executor.rejection-policy:ABORT}") BoundedExecutor.RejectionPolicy rejectionPolicy) {
+		return new BoundedExecutor("request", mode, concurrency, queueCapacity, rejectionPolicy, drainTimeout);
+	}
+
+	@Bean
+	public TourGuideExecutors tourGuideExecutors(@Qualifier("gpsExecutor") BoundedExecutor gpsExecutor,
+			@Qualifier("pricingExecutor") BoundedExecutor pricingExecutor,
+			@Qualifier("requestExecutor") BoundedExecutor requestExecutor) {
+		return new TourGuideExecutors(gpsExecutor, pricingExecutor, requestExecutor);
+	}
 }
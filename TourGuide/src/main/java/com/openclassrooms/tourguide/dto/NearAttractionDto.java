@@ -5,7 +5,7 @@ import gpsUtil.location.Location;
 public class NearAttractionDto {
 
     private String TouristAttractionName;
-    private String TouristAttractionLocation;
+    private Location TouristAttractionLocation;
     private Location userLocations;
     private double distance;
     private int rewardPoints;
@@ -16,10 +16,10 @@ public class NearAttractionDto {
     public void setTouristAttractionName(String touristAttractionName) {
         TouristAttractionName = touristAttractionName;
     }
-    public String getTouristAttractionLocation() {
+    public Location getTouristAttractionLocation() {
         return TouristAttractionLocation;
     }
-    public void setTouristAttractionLocation(String touristAttractionLocation) {
+    public void setTouristAttractionLocation(Location touristAttractionLocation) {
         TouristAttractionLocation = touristAttractionLocation;
     }
     public Location getUserLocations() {
@@ -0,0 +1,345 @@
+package com.openclassrooms.tourguide.event;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.user.User;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bounded, multi-producer, multi-consumer ring buffer of location events: a
+ * user whose location history got a new fix.
+ * <p>
+ * The events are split by user into partitions, each a ring of
+ * {@code capacity} slots. A producer claims a sequence number with a single
+ * atomic increment, writes the user in its slot and marks the slot as
+ * published with that number, so producers never lock. Every subscribed
+ * {@link LocationEventHandler} reads every partition on its own virtual
+ * thread, at its own pace: it takes up to {@code batchSize} contiguous
+ * published events, coalesces the events of the same user, hands the batch
+ * over and waits for it to be handled before moving on. The events of a user
+ * are therefore handled in order, by one thread per handler at a time.
+ * <p>
+ * A slot is reused once every handler has moved past it. When the slowest
+ * handler is a whole ring behind, {@link #publish(User)} waits: this is the
+ * backpressure between the producers (the GPS) and the handlers (the rewards).
+ * Idle handlers park and are woken up by the producers.
+ * <p>
+ * As a {@link MeterBinder}, the bus publishes the number of events not yet
+ * handled by every handler.
+ *
+ * @author Aitor
+ */
+public class LocationEventBus implements AutoCloseable, MeterBinder {
+
+	/**
+	 * Default number of partitions.
+	 */
+	public static final int DEFAULT_PARTITIONS = 4;
+
+	/**
+	 * Default number of slots of a partition.
+	 */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/**
+	 * Default maximum number of events in a batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	/**
+	 * Time {@link #close()} waits for the handlers to drain the published events.
+	 */
+	public static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+	private static final long PRODUCER_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final Logger logger = LoggerFactory.getLogger(LocationEventBus.class);
+	private final Partition[] partitions;
+	private final int batchSize;
+	private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+	private volatile boolean closed;
+
+	/**
+	 * Create a bus with the default settings.
+	 */
+	public LocationEventBus() {
+		this(DEFAULT_PARTITIONS, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Create a bus.
+	 *
+	 * @param partitionCount
+	 *            Number of partitions, the number of threads of each handler.
+	 * @param capacity
+	 *            Number of slots of a partition, rounded up to a power of two.
+	 * @param batchSize
+	 *            Maximum number of events in a batch.
+	 */
+	public LocationEventBus(int partitionCount, int capacity, int batchSize) {
+		if (partitionCount <= 0 || capacity <= 0 || batchSize <= 0) {
+			throw new IllegalArgumentException("Invalid event bus settings: partitions=" + partitionCount
+					+ ", capacity=" + capacity + ", batchSize=" + batchSize);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.partitions = new Partition[partitionCount];
+		for (int i = 0; i < partitionCount; i++) {
+			partitions[i] = new Partition(size);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Subscribe a handler to the events published from now on.
+	 *
+	 * @param name
+	 *            Name of the handler, used in the names of its threads.
+	 * @param handler
+	 *            Handler of the batches.
+	 */
+	public void subscribe(String name, LocationEventHandler handler) {
+		if (closed) {
+			throw new IllegalStateException("Event bus closed");
+		}
+		for (int i = 0; i < partitions.length; i++) {
+			Partition partition = partitions[i];
+			// gates the producers from now on: the slots it has not read yet are not reused
+			Consumer consumer = new Consumer(partition, handler, partition.claimed.get());
+			partition.consumers.add(consumer);
+			consumers.add(consumer);
+			// assigned before the start, so that a producer signalling right away has a thread to unpark
+			consumer.thread = Thread.ofVirtual().name("events-" + name + "-" + i).unstarted(consumer);
+			consumer.thread.start();
+		}
+	}
+
+	/**
+	 * Publish the event of a user who got a new fix, waiting while the
+	 * partition of the user is full.
+	 *
+	 * @param user
+	 *            User whose location history changed.
+	 * @throws RejectedExecutionException
+	 *             if the bus is closed.
+	 */
+	public void publish(User user) {
+		if (closed) {
+			throw new RejectedExecutionException("Event bus closed");
+		}
+		partitions[Math.floorMod(user.getUserId().hashCode(), partitions.length)].publish(user);
+	}
+
+	/**
+	 * Get the number of events not yet handled by every handler.
+	 *
+	 * @return Number of pending events.
+	 */
+	public long getPendingCount() {
+		long pending = 0;
+		for (Partition partition : partitions) {
+			pending += Math.max(0, partition.claimed.get() - partition.minimumNext(partition.claimed.get()));
+		}
+		return pending;
+	}
+
+	/**
+	 * Wait until every event published so far is handled by every handler.
+	 *
+	 * @param timeout
+	 *            Maximum time to wait.
+	 * @return true if every event was handled within the timeout.
+	 */
+	public boolean awaitHandled(Duration timeout) {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		long[] targets = new long[partitions.length];
+		for (int i = 0; i < partitions.length; i++) {
+			targets[i] = partitions[i].claimed.get();
+		}
+		for (int i = 0; i < partitions.length; i++) {
+			while (partitions[i].minimumNext(targets[i]) < targets[i]) {
+				if (System.nanoTime() > deadline) {
+					return false;
+				}
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+			}
+		}
+		return true;
+	}
+
+	public int getPartitionCount() {
+		return partitions.length;
+	}
+
+	public int getCapacity() {
+		return partitions[0].entries.length;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder(TourGuideMetrics.EVENTS_PENDING, this, LocationEventBus::getPendingCount)
+				.description("Location events not yet handled by every handler").register(registry);
+	}
+
+	/**
+	 * Stop accepting events and wait for the handlers to drain the published
+	 * ones.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+		for (Consumer consumer : consumers) {
+			LockSupport.unpark(consumer.thread);
+		}
+		for (Consumer consumer : consumers) {
+			try {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0 || !consumer.thread.join(Duration.ofNanos(remaining))) {
+					logger.warn("Location events still pending after " + DRAIN_TIMEOUT + ": " + getPendingCount());
+					break;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * One ring of events.
+	 */
+	private final class Partition {
+		final User[] entries;
+		final int mask;
+		// next sequence number to hand out to a producer
+		final AtomicLong claimed = new AtomicLong();
+		// sequence number published in each slot
+		final AtomicLongArray published;
+		final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+
+		Partition(int capacity) {
+			this.entries = new User[capacity];
+			this.mask = capacity - 1;
+			this.published = new AtomicLongArray(capacity);
+			for (int i = 0; i < capacity; i++) {
+				published.set(i, -1);
+			}
+		}
+
+		void publish(User user) {
+			long sequence = claimed.getAndIncrement();
+			// the slot is free once every handler has read the event a ring before
+			while (minimumNext(sequence) <= sequence - entries.length) {
+				if (closed) {
+					throw new RejectedExecutionException("Event bus closed");
+				}
+				LockSupport.parkNanos(PRODUCER_WAIT_NANOS);
+			}
+			int slot = (int) sequence & mask;
+			entries[slot] = user;
+			published.set(slot, sequence);
+			for (Consumer consumer : consumers) {
+				consumer.signal();
+			}
+		}
+
+		boolean isPublished(long sequence) {
+			return published.get((int) sequence & mask) == sequence;
+		}
+
+		/**
+		 * Next sequence number of the slowest handler, or the given default if
+		 * there is none.
+		 */
+		long minimumNext(long none) {
+			long minimum = none;
+			boolean any = false;
+			for (Consumer consumer : consumers) {
+				minimum = any ? Math.min(minimum, consumer.next) : consumer.next;
+				any = true;
+			}
+			return minimum;
+		}
+	}
+
+	/**
+	 * Reader of one partition for one handler.
+	 */
+	private final class Consumer implements Runnable {
+		final Partition partition;
+		final LocationEventHandler handler;
+		// next sequence number to read; the slots before it are free for this handler
+		volatile long next;
+		volatile boolean waiting;
+		// set before the thread is started, never null once the consumer can wait
+		volatile Thread thread;
+
+		Consumer(Partition partition, LocationEventHandler handler, long next) {
+			this.partition = partition;
+			this.handler = handler;
+			this.next = next;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				long start = next;
+				long end = start;
+				while (end - start < batchSize && partition.isPublished(end)) {
+					end++;
+				}
+				if (end == start) {
+					if (closed) {
+						// drained: everything published before the close was handled
+						return;
+					}
+					waiting = true;
+					// checked again after raising the flag, so that a producer either sees it or is seen
+					if (!partition.isPublished(start) && !closed) {
+						LockSupport.park(this);
+					}
+					waiting = false;
+					continue;
+				}
+				Set<User> users = new LinkedHashSet<>();
+				try {
+					for (long sequence = start; sequence < end; sequence++) {
+						users.add(partition.entries[(int) sequence & partition.mask]);
+					}
+					handler.onLocations(new ArrayList<>(users)).join();
+				} catch (Throwable e) {
+					// errors included: a dead consumer would never free its slots and park every producer
+					logger.error("Location event handler failed on " + users.size() + " users", e);
+				} finally {
+					next = end;
+				}
+			}
+		}
+
+		void signal() {
+			if (waiting) {
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package com.openclassrooms.tourguide.event;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Consumer of the location events of a {@link LocationEventBus}.
+ *
+ * @author Aitor
+ */
+@FunctionalInterface
+public interface LocationEventHandler {
+
+	/**
+	 * Handle a batch of users whose location history got new fixes.
+	 * <p>
+	 * Every user appears once per batch, however many fixes it got; the next
+	 * batch of the same partition is only delivered once the returned future
+	 * is complete.
+	 *
+	 * @param users
+	 *            Users with new fixes, in the order of their first event.
+	 * @return CompletableFuture complete once the batch is handled.
+	 */
+	CompletableFuture<?> onLocations(List<User> users);
+}
@@ -0,0 +1,314 @@
+package com.openclassrooms.tourguide.executor;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Executor with a bounded number of running tasks and a bounded backlog.
+ * <p>
+ * In {@link Mode#FIXED} mode the tasks run on a fixed pool of platform threads
+ * fed by an {@link ArrayBlockingQueue}. In {@link Mode#VIRTUAL} mode every task
+ * gets its own virtual thread, but no more than {@code concurrency} of them run
+ * at once and no more than {@code concurrency + queueCapacity} are admitted.
+ * When the executor is full the {@link RejectionPolicy} decides what happens to
+ * the new task.
+ * <p>
+ * As a {@link MeterBinder}, the executor publishes its queue depth and number
+ * of running tasks, tagged with its name. Spring binds executor beans to the
+ * application registry on its own.
+ *
+ * @author Aitor
+ */
+public class BoundedExecutor implements Executor, AutoCloseable, MeterBinder {
+
+	/**
+	 * Kind of threads running the tasks.
+	 */
+	public enum Mode {
+		VIRTUAL, FIXED
+	}
+
+	/**
+	 * What to do with a task submitted while the executor is full.
+	 */
+	public enum RejectionPolicy {
+		/**
+		 * Block the submitting thread until there is room.
+		 */
+		BLOCK,
+		/**
+		 * Run the task on the submitting thread.
+		 */
+		CALLER_RUNS,
+		/**
+		 * Throw a {@link RejectedExecutionException}.
+		 */
+		ABORT
+	}
+
+	/**
+	 * Default time {@link #close()} waits for the submitted tasks to finish.
+	 */
+	public static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+	private final Logger logger = LoggerFactory.getLogger(BoundedExecutor.class);
+
+	private final String name;
+	private final Mode mode;
+	private final int concurrency;
+	private final int queueCapacity;
+	private final RejectionPolicy rejectionPolicy;
+	private final Duration drainTimeout;
+	private final ExecutorService delegate;
+
+	// virtual mode only: admission and running permits
+	private final Semaphore admitted;
+	private final Semaphore running;
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	/**
+	 * Create the executor.
+	 *
+	 * @param name
+	 *            Prefix of the thread names.
+	 * @param mode
+	 *            Kind of threads running the tasks.
+	 * @param concurrency
+	 *            Maximum number of tasks running at once.
+	 * @param queueCapacity
+	 *            Maximum number of tasks waiting for a thread.
+	 * @param rejectionPolicy
+	 *            What to do when the executor is full.
+	 */
+	public BoundedExecutor(String name, Mode mode, int concurrency, int queueCapacity,
+			RejectionPolicy rejectionPolicy) {
+		this(name, mode, concurrency, queueCapacity, rejectionPolicy, DEFAULT_DRAIN_TIMEOUT);
+	}
+
+	/**
+	 * Create the executor with a given drain timeout.
+	 *
+	 * @param name
+	 *            Prefix of the thread names.
+	 * @param mode
+	 *            Kind of threads running the tasks.
+	 * @param concurrency
+	 *            Maximum number of tasks running at once.
+	 * @param queueCapacity
+	 *            Maximum number of tasks waiting for a thread.
+	 * @param rejectionPolicy
+	 *            What to do when the executor is full.
+	 * @param drainTimeout
+	 *            Time {@link #close()} waits for the submitted tasks to finish.
+	 */
+	public BoundedExecutor(String name, Mode mode, int concurrency, int queueCapacity,
+			RejectionPolicy rejectionPolicy, Duration drainTimeout) {
+		if (concurrency <= 0 || queueCapacity < 0) {
+			throw new IllegalArgumentException(
+					"Invalid bounds for " + name + ": concurrency=" + concurrency + ", queueCapacity=" + queueCapacity);
+		}
+		this.name = name;
+		this.mode = mode;
+		this.concurrency = concurrency;
+		this.queueCapacity = queueCapacity;
+		this.rejectionPolicy = rejectionPolicy;
+		this.drainTimeout = drainTimeout;
+		if (mode == Mode.VIRTUAL) {
+			this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+			this.admitted = new Semaphore(concurrency + queueCapacity);
+			this.running = new Semaphore(concurrency);
+		} else {
+			AtomicInteger threadNumber = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+					// a synchronous hand-off is not possible with an ArrayBlockingQueue of size 0
+					new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+					r -> new Thread(r, name + "-" + threadNumber.getAndIncrement()), rejectionHandler(rejectionPolicy));
+			this.delegate = pool;
+			this.admitted = null;
+			this.running = null;
+		}
+	}
+
+	/**
+	 * Run a task and expose its result as a future.
+	 *
+	 * @param supplier
+	 *            Task to run.
+	 * @return CompletableFuture completed with the result of the task.
+	 * @throws RejectedExecutionException
+	 *             If the executor is full and the policy is {@link RejectionPolicy#ABORT}.
+	 */
+	public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+		return CompletableFuture.supplyAsync(supplier, this);
+	}
+
+	/**
+	 * Run a task and expose its completion as a future.
+	 *
+	 * @param task
+	 *            Task to run.
+	 * @return CompletableFuture completed when the task is done.
+	 * @throws RejectedExecutionException
+	 *             If the executor is full and the policy is {@link RejectionPolicy#ABORT}.
+	 */
+	public CompletableFuture<Void> run(Runnable task) {
+		return CompletableFuture.runAsync(task, this);
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (mode == Mode.FIXED) {
+			delegate.execute(task);
+			return;
+		}
+		if (!admitted.tryAcquire()) {
+			switch (rejectionPolicy) {
+			case CALLER_RUNS:
+				task.run();
+				return;
+			case ABORT:
+				throw new RejectedExecutionException(name + " executor is full");
+			default:
+				admitted.acquireUninterruptibly();
+			}
+		}
+		waiting.incrementAndGet();
+		try {
+			delegate.execute(() -> {
+				running.acquireUninterruptibly();
+				waiting.decrementAndGet();
+				try {
+					task.run();
+				} finally {
+					running.release();
+					admitted.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			waiting.decrementAndGet();
+			admitted.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Get the number of tasks waiting for a thread.
+	 *
+	 * @return Number of queued tasks.
+	 */
+	public int getQueueSize() {
+		if (mode == Mode.FIXED) {
+			return ((ThreadPoolExecutor) delegate).getQueue().size();
+		}
+		return waiting.get();
+	}
+
+	/**
+	 * Get the number of tasks currently running.
+	 *
+	 * @return Number of running tasks.
+	 */
+	public int getActiveCount() {
+		if (mode == Mode.FIXED) {
+			return ((ThreadPoolExecutor) delegate).getActiveCount();
+		}
+		return concurrency - running.availablePermits();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("tourguide.executor.queued", this, BoundedExecutor::getQueueSize)
+				.description("Tasks waiting for a thread").tag("executor", name).register(registry);
+		Gauge.builder("tourguide.executor.active", this, BoundedExecutor::getActiveCount)
+				.description("Tasks currently running").tag("executor", name).register(registry);
+		Gauge.builder("tourguide.executor.queue.capacity", this, BoundedExecutor::getQueueCapacity)
+				.description("Maximum number of waiting tasks").tag("executor", name).register(registry);
+	}
+
+	/**
+	 * Stop accepting tasks and wait for the submitted ones to finish.
+	 *
+	 * @param timeout
+	 *            Maximum time to wait.
+	 * @param unit
+	 *            Unit of the timeout.
+	 * @return true if every task finished within the timeout.
+	 */
+	public boolean shutdown(long timeout, TimeUnit unit) {
+		delegate.shutdown();
+		try {
+			if (delegate.awaitTermination(timeout, unit)) {
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		logger.warn("{} executor did not drain within {} {}, interrupting remaining tasks", name, timeout, unit);
+		delegate.shutdownNow();
+		return false;
+	}
+
+	/**
+	 * Stop accepting tasks and wait up to the drain timeout for the submitted
+	 * ones to finish. Spring calls it when the application context closes.
+	 */
+	@Override
+	public void close() {
+		shutdown(drainTimeout.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	private static RejectedExecutionHandler rejectionHandler(RejectionPolicy rejectionPolicy) {
+		switch (rejectionPolicy) {
+		case CALLER_RUNS:
+			return new ThreadPoolExecutor.CallerRunsPolicy();
+		case ABORT:
+			return new ThreadPoolExecutor.AbortPolicy();
+		default:
+			return (task, pool) -> {
+				if (pool.isShutdown()) {
+					throw new RejectedExecutionException("Executor is shut down");
+				}
+				try {
+					pool.getQueue().put(task);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RejectedExecutionException("Interrupted while waiting for room in the queue", e);
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.openclassrooms.tourguide.executor;
+
+/**
+ * The executors of the workloads of {@code TourGuideService}, so that blocking
+ * calls never run on the common fork/join pool:
+ * <ul>
+ * <li>gps: calls to GpsUtil, from the tracker and the requests;</li>
+ * <li>pricing: calls to TripPricer;</li>
+ * <li>request: assembly of the responses of the controller.</li>
+ * </ul>
+ * The reward calculations have their own executor in {@code RewardsService}.
+ *
+ * @author Aitor
+ */
+public class TourGuideExecutors {
+
+	private final BoundedExecutor gps;
+	private final BoundedExecutor pricing;
+	private final BoundedExecutor request;
+
+	public TourGuideExecutors(BoundedExecutor gps, BoundedExecutor pricing, BoundedExecutor request) {
+		this.gps = gps;
+		this.pricing = pricing;
+		this.request = request;
+	}
+
+	/**
+	 * Create executors on virtual threads with the default bounds, for use
+	 * outside of Spring.
+	 *
+	 * @return Default executors.
+	 */
+	public static TourGuideExecutors defaults() {
+		return new TourGuideExecutors(
+				new BoundedExecutor("gps", BoundedExecutor.Mode.VIRTUAL, 500, 100_000,
+						BoundedExecutor.RejectionPolicy.BLOCK),
+				new BoundedExecutor("pricing", BoundedExecutor.Mode.VIRTUAL, 200, 10_000,
+						BoundedExecutor.RejectionPolicy.BLOCK),
+				new BoundedExecutor("request", BoundedExecutor.Mode.VIRTUAL, 1000, 10_000,
+						BoundedExecutor.RejectionPolicy.ABORT));
+	}
+
+	public BoundedExecutor getGps() {
+		return gps;
+	}
+
+	public BoundedExecutor getPricing() {
+		return pricing;
+	}
+
+	public BoundedExecutor getRequest() {
+		return request;
+	}
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.tourguide.health;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import com.openclassrooms.tourguide.helper.InternalUserLoader;
+
+/**
+ * Readiness of the internal users: out of service while they are loaded in
+ * the background, up once they are all in the registry and down if the load
+ * failed. Included in the readiness group of the health endpoint, so the
+ * application only accepts traffic once its users are available.
+ *
+ * @author Aitor
+ */
+public class InternalUsersHealthIndicator implements HealthIndicator {
+
+	private final InternalUserLoader loader;
+
+	/**
+	 * Create an indicator.
+	 *
+	 * @param loader
+	 *            Loader of the internal users.
+	 */
+	public InternalUsersHealthIndicator(InternalUserLoader loader) {
+		this.loader = loader;
+	}
+
+	@Override
+	public Health health() {
+		Health.Builder builder;
+		if (loader.getCompletion().isCompletedExceptionally()) {
+			builder = Health.down();
+		} else if (loader.isLoaded()) {
+			builder = Health.up();
+		} else {
+			builder = Health.outOfService();
+		}
+		return builder.withDetail("loaded", loader.getLoadedCount())
+				.withDetail("expected", loader.getExpectedCount())
+				.build();
+	}
+}
@@ -0,0 +1,179 @@
+package com.openclassrooms.tourguide.helper;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserRegistry;
+
+/**
+ * Generates the internal test users and loads them into a registry.
+ * <p>
+ * The users are generated in chunks of {@link #CHUNK_SIZE}, in parallel on the
+ * given executor. Every chunk draws from its own {@link SplittableRandom},
+ * split from a root seeded with the seed of the loader in chunk order, so the
+ * ids, locations and visit days of the users only depend on the seed, not on
+ * the number of threads or the scheduling. Visit times are counted back from
+ * the start of the load.
+ * <p>
+ * An asynchronous load returns right away; {@link #isLoaded()} and the counts
+ * tell the readiness of the application.
+ *
+ * @author Aitor
+ */
+public class InternalUserLoader {
+
+	/**
+	 * Default seed of the generated users.
+	 */
+	public static final long DEFAULT_SEED = 0;
+
+	/**
+	 * Number of users generated by one task.
+	 */
+	public static final int CHUNK_SIZE = 1024;
+
+	private static final int HISTORY_LENGTH = 3;
+	private static final double MAX_LATITUDE = 85.05112878;
+	private static final int MAX_DAYS_AGO = 30;
+
+	private final long seed;
+	private final boolean async;
+	private final Executor executor;
+	private final AtomicInteger loadedCount = new AtomicInteger();
+	private volatile int expectedCount;
+	private volatile CompletableFuture<Integer> completion = CompletableFuture.completedFuture(0);
+
+	/**
+	 * Create a loader with the default seed, generating the users on the common
+	 * pool and waiting for them.
+	 */
+	public InternalUserLoader() {
+		this(DEFAULT_SEED, false, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a loader.
+	 *
+	 * @param seed
+	 *            Seed of the generated users.
+	 * @param async
+	 *            true to return before the users are loaded.
+	 * @param executor
+	 *            Executor generating the chunks of users.
+	 */
+	public InternalUserLoader(long seed, boolean async, Executor executor) {
+		this.seed = seed;
+		this.async = async;
+		this.executor = executor;
+	}
+
+	/**
+	 * Generate users and add them to a registry, along with a short location
+	 * history.
+	 *
+	 * @param registry
+	 *            Registry to fill.
+	 * @param count
+	 *            Number of users.
+	 * @return CompletableFuture with the number of users, complete once they are
+	 *         all in the registry; already complete unless the loader is
+	 *         asynchronous.
+	 */
+	public CompletableFuture<Integer> load(UserRegistry registry, int count) {
+		long now = System.currentTimeMillis();
+		loadedCount.set(0);
+		expectedCount = count;
+		SplittableRandom root = new SplittableRandom(seed);
+		int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			int from = chunk * CHUNK_SIZE;
+			int to = Math.min(count, from + CHUNK_SIZE);
+			// split here, in chunk order, for results independent of the scheduling
+			SplittableRandom random = root.split();
+			futures[chunk] = CompletableFuture.runAsync(() -> loadChunk(registry, from, to, random, now), executor);
+		}
+		CompletableFuture<Integer> loaded = CompletableFuture.allOf(futures).thenApply(v -> count);
+		completion = loaded;
+		if (!async) {
+			loaded.join();
+		}
+		return loaded;
+	}
+
+	/**
+	 * Check if the last load is complete.
+	 *
+	 * @return true once every user is in the registry, false while loading or
+	 *         if the load failed.
+	 */
+	public boolean isLoaded() {
+		CompletableFuture<Integer> current = completion;
+		return current.isDone() && !current.isCompletedExceptionally();
+	}
+
+	/**
+	 * Get the completion of the last load.
+	 *
+	 * @return CompletableFuture with the number of users.
+	 */
+	public CompletableFuture<Integer> getCompletion() {
+		return completion;
+	}
+
+	public int getLoadedCount() {
+		return loadedCount.get();
+	}
+
+	public int getExpectedCount() {
+		return expectedCount;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public boolean isAsync() {
+		return async;
+	}
+
+	private void loadChunk(UserRegistry registry, int from, int to, SplittableRandom random, long now) {
+		List<User> users = new ArrayList<>(to - from);
+		for (int i = from; i < to; i++) {
+			String userName = "internalUser" + i;
+			users.add(new User(randomUuid(random), userName, "000", userName + "@tourGuide.com"));
+		}
+		// registered before their history so that the journal of the registry records it
+		registry.addAll(users);
+		for (User user : users) {
+			for (int i = 0; i < HISTORY_LENGTH; i++) {
+				double latitude = -MAX_LATITUDE + random.nextDouble() * 2 * MAX_LATITUDE;
+				double longitude = -180 + random.nextDouble() * 360;
+				long time = now - TimeUnit.DAYS.toMillis(random.nextInt(MAX_DAYS_AGO));
+				user.addToVisitedLocations(
+						new VisitedLocation(user.getUserId(), new Location(latitude, longitude), new Date(time)));
+			}
+		}
+		loadedCount.addAndGet(users.size());
+	}
+
+	/**
+	 * Random (version 4) UUID drawn from a seeded generator.
+	 */
+	private static UUID randomUuid(SplittableRandom random) {
+		long mostSignificantBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+		long leastSignificantBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(mostSignificantBits, leastSignificantBits);
+	}
+}
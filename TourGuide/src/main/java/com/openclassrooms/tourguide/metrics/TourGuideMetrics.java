@@ -0,0 +1,101 @@
+package com.openclassrooms.tourguide.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Names of the meters published by the application, all prefixed with
+ * {@code tourguide.}, and the timer shared by the calls to the external
+ * libraries (GpsUtil, RewardCentral and TripPricer).
+ * <p>
+ * Components take their {@link MeterRegistry} in their constructor; the
+ * convenience constructors use the global registry, to which Spring Boot adds
+ * the actuator registry.
+ *
+ * @author Aitor
+ */
+public final class TourGuideMetrics {
+
+	/**
+	 * Latency of a call to an external library, tagged with {@code service}.
+	 */
+	public static final String EXTERNAL_LATENCY = "tourguide.external.latency";
+
+	/**
+	 * Duration of one reward calculation for one user.
+	 */
+	public static final String REWARDS_CALCULATION = "tourguide.rewards.calculation";
+
+	/**
+	 * Visited locations evaluated by the reward calculations.
+	 */
+	public static final String REWARDS_LOCATIONS = "tourguide.rewards.locations.evaluated";
+
+	/**
+	 * Visited locations skipped by the reward calculations, because they stayed
+	 * in the region of an evaluated one.
+	 */
+	public static final String REWARDS_LOCATIONS_SKIPPED = "tourguide.rewards.locations.skipped";
+
+	/**
+	 * Location/attraction pairs within the proximity buffer, checked for a new
+	 * reward.
+	 */
+	public static final String REWARDS_PAIRS = "tourguide.rewards.pairs.evaluated";
+
+	/**
+	 * Rewards granted.
+	 */
+	public static final String REWARDS_GRANTED = "tourguide.rewards.granted";
+
+	/**
+	 * Duration of a tracker cycle, from its start to its last user.
+	 */
+	public static final String TRACKER_CYCLE = "tourguide.tracker.cycle";
+
+	/**
+	 * Largest partition start delay of the last tracker cycle.
+	 */
+	public static final String TRACKER_LAG = "tourguide.tracker.lag";
+
+	/**
+	 * Users tracked per second during the last tracker cycle.
+	 */
+	public static final String TRACKER_THROUGHPUT = "tourguide.tracker.throughput";
+
+	/**
+	 * Users tracked, tagged with the {@code outcome}.
+	 */
+	public static final String TRACKER_USERS = "tourguide.tracker.users";
+
+	/**
+	 * Location events not yet handled by every handler.
+	 */
+	public static final String EVENTS_PENDING = "tourguide.events.pending";
+
+	/**
+	 * Nearby attraction snapshots computed, tagged with the {@code source}:
+	 * event for a new fix, request for a missing or too stale snapshot.
+	 */
+	public static final String NEARBY_SNAPSHOTS = "tourguide.nearby.snapshots";
+
+	private TourGuideMetrics() {
+	}
+
+	/**
+	 * Get the timer of the calls to an external library.
+	 *
+	 * @param registry
+	 *            Registry of the timer.
+	 * @param service
+	 *            Name of the library: gpsUtil, rewardCentral or tripPricer.
+	 * @return Timer publishing a percentile histogram.
+	 */
+	public static Timer externalCallTimer(MeterRegistry registry, String service) {
+		return Timer.builder(EXTERNAL_LATENCY)
+				.description("Latency of the calls to the external libraries")
+				.tag("service", service)
+				.publishPercentileHistogram()
+				.register(registry);
+	}
+}
@@ -0,0 +1,694 @@
+package com.openclassrooms.tourguide.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserJournal;
+import com.openclassrooms.tourguide.user.UserRegistry;
+import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationLog;
+
+/**
+ * {@link UserJournal} persisting the users, their visited locations and their
+ * rewards to append-only, memory-mapped files in a local directory.
+ * <p>
+ * Changes are appended as binary records to the live segment, a file of fixed
+ * size mapped in memory: a writer reserves its bytes with a single atomic
+ * add and copies the record in place, so concurrent writers never wait for
+ * each other and a record reaches the page cache, and survives a crash of the
+ * process, as soon as the call returns. The segment is forced to disk every
+ * flush interval. A full segment is replaced by a new one, the only step
+ * taking a lock.
+ * <p>
+ * Compaction, at startup and then every compaction interval, starts a new
+ * segment and writes the state of every user of the registry, including the
+ * retained history in a single record per user, to a snapshot numbered after
+ * that segment. Once the snapshot is complete it replaces every older file.
+ * <p>
+ * {@link #restore(UserRegistry, List)} maps the latest snapshot and the
+ * segments written after it and decodes the records in place. Concurrent
+ * writers may reserve the records of a user out of order, so every location
+ * record carries the sequence number of the location and the locations of a
+ * user are appended in that order once every file is read. A location
+ * appended while a snapshot was written may be both in the snapshot and in
+ * the next segment, and a cleared history leaves a record with the sequence
+ * number it starts over from: the locations below the restored history or
+ * below the last clear are skipped. Nothing is journaled until the restore is
+ * complete.
+ * <p>
+ * Record layout: length of the record (int, header included), type (byte,
+ * written last, 0 while the record is incomplete), payload. A zero length
+ * marks the end of the written part of a segment, so a crash of the process
+ * loses at most the records reserved after a record it left incomplete.
+ *
+ * @author Aitor
+ */
+public class JournalStore implements UserJournal, AutoCloseable {
+
+	/**
+	 * Default size of a segment.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+	static final byte USER = 1;
+	static final byte LOCATION = 2;
+	static final byte REWARD = 3;
+	static final byte HISTORY = 4;
+	static final byte CLEAR = 5;
+
+	private static final int HEADER = Integer.BYTES + Byte.BYTES;
+	private static final int UUID_BYTES = 2 * Long.BYTES;
+	private static final int FIX_BYTES = 2 * Double.BYTES + Long.BYTES;
+	private static final int MAX_WINDOW = 1 << 30;
+	private static final int SNAPSHOT_BUFFER = 1 << 20;
+	private static final String SEGMENT = "segment-";
+	private static final String SNAPSHOT = "snapshot-";
+	private static final String SUFFIX = ".log";
+
+	private final Logger logger = LoggerFactory.getLogger(JournalStore.class);
+	private final Path directory;
+	private final int segmentSize;
+	private final Duration flushInterval;
+	private final Duration compactionInterval;
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "journal");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Object rollLock = new Object();
+	private final Object compactionLock = new Object();
+	private volatile Segment segment;
+	private volatile UserRegistry registry;
+	private volatile boolean recording;
+
+	/**
+	 * Create a store with the default segment size.
+	 *
+	 * @param directory
+	 *            Directory of the files, created if needed.
+	 * @param flushInterval
+	 *            Interval between two flushes of the live segment to disk.
+	 * @param compactionInterval
+	 *            Interval between two compactions.
+	 */
+	public JournalStore(Path directory, Duration flushInterval, Duration compactionInterval) {
+		this(directory, DEFAULT_SEGMENT_SIZE, flushInterval, compactionInterval);
+	}
+
+	/**
+	 * Create a store.
+	 *
+	 * @param directory
+	 *            Directory of the files, created if needed.
+	 * @param segmentSize
+	 *            Size of a segment in bytes, the largest record written to it.
+	 * @param flushInterval
+	 *            Interval between two flushes of the live segment to disk.
+	 * @param compactionInterval
+	 *            Interval between two compactions.
+	 */
+	public JournalStore(Path directory, int segmentSize, Duration flushInterval, Duration compactionInterval) {
+		if (segmentSize < 4096 || !flushInterval.isPositive() || !compactionInterval.isPositive()) {
+			throw new IllegalArgumentException("Invalid journal settings: segmentSize=" + segmentSize
+					+ ", flushInterval=" + flushInterval + ", compactionInterval=" + compactionInterval);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.flushInterval = flushInterval;
+		this.compactionInterval = compactionInterval;
+		try {
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot create the journal directory " + directory, e);
+		}
+	}
+
+	@Override
+	public void restore(UserRegistry registry, List<Attraction> attractions) {
+		if (this.registry != null) {
+			throw new IllegalStateException("Journal already restored");
+		}
+		long start = System.nanoTime();
+		Replay replay = new Replay(registry, attractions);
+		long snapshot = latest(SNAPSHOT);
+		try {
+			if (snapshot >= 0) {
+				read(file(SNAPSHOT, snapshot), replay);
+			}
+			for (long number : numbers(SEGMENT)) {
+				if (number >= snapshot) {
+					read(file(SEGMENT, number), replay);
+				}
+			}
+			replay.finish();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the journal in " + directory, e);
+		}
+		logger.info("Restored " + replay.users + " users, " + replay.locations + " locations and " + replay.rewards
+				+ " rewards from " + directory + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+				+ " ms");
+
+		this.registry = registry;
+		compact();
+		long flushMillis = flushInterval.toMillis();
+		scheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+		long compactionMillis = compactionInterval.toMillis();
+		scheduler.scheduleWithFixedDelay(this::compactQuietly, compactionMillis, compactionMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void userAdded(User user) {
+		if (!recording) {
+			return;
+		}
+		ByteBuffer payload = encodeUser(user);
+		append(USER, payload);
+	}
+
+	@Override
+	public void locationAdded(User user, long sequence, VisitedLocation visitedLocation) {
+		if (!recording) {
+			return;
+		}
+		ByteBuffer payload = ByteBuffer.allocate(UUID_BYTES + Long.BYTES + FIX_BYTES);
+		putUuid(payload, user.getUserId());
+		payload.putLong(sequence);
+		payload.putDouble(visitedLocation.location.latitude);
+		payload.putDouble(visitedLocation.location.longitude);
+		payload.putLong(visitedLocation.timeVisited == null ? VisitedLocationLog.NO_TIME
+				: visitedLocation.timeVisited.getTime());
+		append(LOCATION, payload.flip());
+	}
+
+	@Override
+	public void locationsCleared(User user, long sequence) {
+		if (!recording) {
+			return;
+		}
+		ByteBuffer payload = ByteBuffer.allocate(UUID_BYTES + Long.BYTES);
+		putUuid(payload, user.getUserId());
+		payload.putLong(sequence);
+		append(CLEAR, payload.flip());
+	}
+
+	@Override
+	public void rewardAdded(User user, UserReward userReward) {
+		if (!recording) {
+			return;
+		}
+		append(REWARD, encodeReward(user, userReward));
+	}
+
+	/**
+	 * Write a snapshot of the registry and delete the files it replaces.
+	 */
+	public void compact() {
+		synchronized (compactionLock) {
+			UserRegistry users = registry;
+			if (users == null) {
+				throw new IllegalStateException("Journal not restored");
+			}
+			long start = System.nanoTime();
+			// changes made from now on go to the new segment, the snapshot covers the older ones
+			long number = roll(segment);
+			recording = true;
+			Path snapshot = file(SNAPSHOT, number);
+			Path partial = directory.resolve(SNAPSHOT + number + ".tmp");
+			long bytes;
+			try {
+				bytes = writeSnapshot(users, partial);
+				Files.move(partial, snapshot, StandardCopyOption.ATOMIC_MOVE);
+				for (long older : numbers(SNAPSHOT)) {
+					if (older < number) {
+						Files.deleteIfExists(file(SNAPSHOT, older));
+					}
+				}
+				for (long older : numbers(SEGMENT)) {
+					if (older < number) {
+						Files.deleteIfExists(file(SEGMENT, older));
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot compact the journal in " + directory, e);
+			}
+			logger.debug("Compacted the journal into " + snapshot.getFileName() + " (" + bytes + " bytes) in "
+					+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+		}
+	}
+
+	/**
+	 * Force the live segment to disk.
+	 */
+	public void flush() {
+		Segment current = segment;
+		if (current != null) {
+			current.buffer.force();
+		}
+	}
+
+	/**
+	 * Stop journaling and flush the live segment.
+	 */
+	@Override
+	public void close() {
+		recording = false;
+		scheduler.shutdownNow();
+		synchronized (compactionLock) {
+			flush();
+		}
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	private void compactQuietly() {
+		try {
+			compact();
+		} catch (RuntimeException e) {
+			logger.error("Journal compaction failed", e);
+		}
+	}
+
+	private void append(byte type, ByteBuffer payload) {
+		int length = HEADER + payload.remaining();
+		if (length > segmentSize) {
+			throw new IllegalArgumentException("Record of " + length + " bytes larger than a segment");
+		}
+		while (true) {
+			Segment current = segment;
+			long offset = current.position.getAndAdd(length);
+			if (offset + length <= segmentSize) {
+				current.write((int) offset, type, payload);
+				return;
+			}
+			roll(current);
+		}
+	}
+
+	/**
+	 * Replace a segment with a new one, unless another thread already did.
+	 *
+	 * @return Number of the live segment.
+	 */
+	private long roll(Segment full) {
+		Segment current;
+		synchronized (rollLock) {
+			current = segment;
+			if (current == full) {
+				long number = current == null ? Math.max(latest(SEGMENT), latest(SNAPSHOT)) + 1 : current.number + 1;
+				segment = open(number);
+				if (full != null) {
+					flushLater(full);
+				}
+				return number;
+			}
+		}
+		return current.number;
+	}
+
+	private void flushLater(Segment full) {
+		try {
+			// the full segment is no longer written to, except by writers that reserved space in it
+			scheduler.execute(full.buffer::force);
+		} catch (RejectedExecutionException e) {
+			full.buffer.force();
+		}
+	}
+
+	private Segment open(long number) {
+		try (FileChannel channel = FileChannel.open(file(SEGMENT, number), StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			// the mapping stays valid once the channel is closed
+			return new Segment(number, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot create a journal segment in " + directory, e);
+		}
+	}
+
+	private long writeSnapshot(UserRegistry users, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER);
+			users.stream().forEach(user -> {
+				writeRecord(channel, buffer, USER, encodeUser(user));
+				writeRecord(channel, buffer, HISTORY, encodeHistory(user));
+				for (UserReward userReward : user.getUserRewards().values()) {
+					writeRecord(channel, buffer, REWARD, encodeReward(user, userReward));
+				}
+			});
+			drain(channel, buffer.flip());
+			channel.force(true);
+			return channel.size();
+		}
+	}
+
+	private static void writeRecord(FileChannel channel, ByteBuffer buffer, byte type, ByteBuffer payload) {
+		int length = HEADER + payload.remaining();
+		if (length > buffer.remaining()) {
+			drain(channel, buffer.flip());
+			buffer.clear();
+		}
+		if (length > buffer.remaining()) {
+			ByteBuffer record = ByteBuffer.allocate(length);
+			drain(channel, record.putInt(length).put(type).put(payload).flip());
+		} else {
+			buffer.putInt(length).put(type).put(payload);
+		}
+	}
+
+	private static void drain(FileChannel channel, ByteBuffer buffer) {
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Decode the records of a file, mapped by windows of at most
+	 * {@link #MAX_WINDOW} bytes.
+	 */
+	private void read(Path path, Replay replay) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+			while (position + HEADER <= size) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(size - position, MAX_WINDOW));
+				int offset = 0;
+				while (offset + HEADER <= window.limit()) {
+					int length = window.getInt(offset);
+					if (length == 0) {
+						return;
+					}
+					if (length < HEADER || position + offset + length > size) {
+						logger.warn("Ignoring the end of " + path.getFileName() + " from offset " + (position + offset)
+								+ ": invalid record length " + length);
+						return;
+					}
+					if (offset + length > window.limit()) {
+						// the record continues in the next window
+						break;
+					}
+					byte type = window.get(offset + Integer.BYTES);
+					if (type != 0) {
+						replay.apply(type, window.slice(offset + HEADER, length - HEADER));
+					}
+					offset += length;
+				}
+				position += offset;
+				if (offset == 0) {
+					return;
+				}
+			}
+		}
+	}
+
+	private static ByteBuffer encodeUser(User user) {
+		byte[] name = utf8(user.getUserName());
+		byte[] phone = utf8(user.getPhoneNumber());
+		byte[] email = utf8(user.getEmailAddress());
+		ByteBuffer payload = ByteBuffer.allocate(UUID_BYTES + stringBytes(name) + stringBytes(phone)
+				+ stringBytes(email));
+		putUuid(payload, user.getUserId());
+		putString(payload, name);
+		putString(payload, phone);
+		putString(payload, email);
+		return payload.flip();
+	}
+
+	private static ByteBuffer encodeHistory(User user) {
+		VisitedLocationLog.Snapshot history = user.getLocationHistory();
+		int size = history.size();
+		ByteBuffer payload = ByteBuffer.allocate(UUID_BYTES + 2 * Long.BYTES + Integer.BYTES + size * FIX_BYTES);
+		putUuid(payload, user.getUserId());
+		payload.putLong(history.getEndSequence());
+		payload.putLong(Math.min(user.getRewardedLocationCount(), history.getEndSequence()));
+		payload.putInt(size);
+		for (int i = 0; i < size; i++) {
+			payload.putDouble(history.getLatitude(i));
+			payload.putDouble(history.getLongitude(i));
+			payload.putLong(history.getTimeMillis(i));
+		}
+		return payload.flip();
+	}
+
+	private static ByteBuffer encodeReward(User user, UserReward userReward) {
+		Attraction attraction = userReward.attraction;
+		VisitedLocation visitedLocation = userReward.visitedLocation;
+		byte[] name = utf8(attraction.attractionName);
+		byte[] city = utf8(attraction.city);
+		byte[] state = utf8(attraction.state);
+		ByteBuffer payload = ByteBuffer.allocate(UUID_BYTES + stringBytes(name) + stringBytes(city)
+				+ stringBytes(state) + 2 * Double.BYTES + FIX_BYTES + Integer.BYTES);
+		putUuid(payload, user.getUserId());
+		putString(payload, name);
+		putString(payload, city);
+		putString(payload, state);
+		payload.putDouble(attraction.latitude);
+		payload.putDouble(attraction.longitude);
+		payload.putDouble(visitedLocation.location.latitude);
+		payload.putDouble(visitedLocation.location.longitude);
+		payload.putLong(visitedLocation.timeVisited == null ? VisitedLocationLog.NO_TIME
+				: visitedLocation.timeVisited.getTime());
+		payload.putInt(userReward.getRewardPoints());
+		return payload.flip();
+	}
+
+	private static void putUuid(ByteBuffer buffer, UUID uuid) {
+		buffer.putLong(uuid.getMostSignificantBits());
+		buffer.putLong(uuid.getLeastSignificantBits());
+	}
+
+	private static UUID getUuid(ByteBuffer buffer) {
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+
+	private static byte[] utf8(String value) {
+		return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int stringBytes(byte[] value) {
+		return Integer.BYTES + (value == null ? 0 : value.length);
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] value) {
+		if (value == null) {
+			buffer.putInt(-1);
+		} else {
+			buffer.putInt(value.length).put(value);
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static Date toDate(long timeMillis) {
+		return timeMillis == VisitedLocationLog.NO_TIME ? null : new Date(timeMillis);
+	}
+
+	private Path file(String prefix, long number) {
+		return directory.resolve(prefix + String.format("%012d", number) + SUFFIX);
+	}
+
+	/**
+	 * Get the numbers of the files with a prefix, in increasing order.
+	 */
+	private List<Long> numbers(String prefix) {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.map(path -> path.getFileName().toString())
+					.filter(name -> name.startsWith(prefix) && name.endsWith(SUFFIX))
+					.map(name -> Long.valueOf(name.substring(prefix.length(), name.length() - SUFFIX.length())))
+					.sorted().toList();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot list the journal directory " + directory, e);
+		}
+	}
+
+	private long latest(String prefix) {
+		List<Long> numbers = numbers(prefix);
+		return numbers.isEmpty() ? -1 : numbers.get(numbers.size() - 1);
+	}
+
+	/**
+	 * A mapped segment file and its write position.
+	 */
+	private static final class Segment {
+		final long number;
+		final MappedByteBuffer buffer;
+		final AtomicLong position = new AtomicLong();
+
+		Segment(long number, MappedByteBuffer buffer) {
+			this.number = number;
+			this.buffer = buffer;
+		}
+
+		void write(int offset, byte type, ByteBuffer payload) {
+			// absolute accesses only: writers share the buffer but never its position
+			buffer.putInt(offset, HEADER + payload.remaining());
+			buffer.put(offset + HEADER, payload, payload.position(), payload.remaining());
+			buffer.put(offset + Integer.BYTES, type);
+		}
+	}
+
+	/**
+	 * A location read from a segment, appended once every file is read.
+	 */
+	private static final class Fix {
+		final long sequence;
+		final double latitude;
+		final double longitude;
+		final long timeMillis;
+
+		Fix(long sequence, double latitude, double longitude, long timeMillis) {
+			this.sequence = sequence;
+			this.latitude = latitude;
+			this.longitude = longitude;
+			this.timeMillis = timeMillis;
+		}
+	}
+
+	/**
+	 * Applies decoded records to a registry.
+	 */
+	private static final class Replay {
+		final UserRegistry registry;
+		final Map<String, Attraction> attractions = new HashMap<>();
+		// locations of the segments, by user, in the order their records were reserved
+		final Map<UUID, List<Fix>> fixes = new HashMap<>();
+		// sequence number the history of a user last started over from
+		final Map<UUID, Long> cleared = new HashMap<>();
+		long users;
+		long locations;
+		long rewards;
+
+		Replay(UserRegistry registry, List<Attraction> attractions) {
+			this.registry = registry;
+			for (Attraction attraction : attractions) {
+				this.attractions.put(attraction.attractionName, attraction);
+			}
+		}
+
+		void apply(byte type, ByteBuffer payload) {
+			UUID userId = getUuid(payload);
+			if (type == USER) {
+				if (registry.get(userId) == null) {
+					registry.add(new User(userId, getString(payload), getString(payload), getString(payload)));
+					users++;
+				}
+				return;
+			}
+			User user = registry.get(userId);
+			if (user == null) {
+				return;
+			}
+			switch (type) {
+			case LOCATION -> fixes.computeIfAbsent(userId, id -> new ArrayList<>())
+					.add(new Fix(payload.getLong(), payload.getDouble(), payload.getDouble(), payload.getLong()));
+			case CLEAR -> cleared.merge(userId, payload.getLong(), Math::max);
+			case HISTORY -> {
+				long endSequence = payload.getLong();
+				long evaluated = payload.getLong();
+				int size = payload.getInt();
+				double[] latitudes = new double[size];
+				double[] longitudes = new double[size];
+				long[] times = new long[size];
+				for (int i = 0; i < size; i++) {
+					latitudes[i] = payload.getDouble();
+					longitudes[i] = payload.getDouble();
+					times[i] = payload.getLong();
+				}
+				user.restoreLocationHistory(latitudes, longitudes, times, size, endSequence, evaluated);
+				locations += size;
+			}
+			case REWARD -> {
+				String name = getString(payload);
+				String city = getString(payload);
+				String state = getString(payload);
+				double attractionLatitude = payload.getDouble();
+				double attractionLongitude = payload.getDouble();
+				Attraction attraction = attractions.get(name);
+				if (attraction == null) {
+					// no longer listed by gpsUtil: keep the reward with the persisted attraction
+					attraction = new Attraction(name, city, state, attractionLatitude, attractionLongitude);
+				}
+				VisitedLocation visitedLocation = new VisitedLocation(userId,
+						new Location(payload.getDouble(), payload.getDouble()), toDate(payload.getLong()));
+				if (user.addUserReward(new UserReward(visitedLocation, attraction, payload.getInt()))) {
+					rewards++;
+				}
+			}
+			default -> throw new IllegalStateException("Unknown journal record type " + type);
+			}
+		}
+
+		/**
+		 * Apply the clears and append the locations of the segments, once every
+		 * file is read.
+		 */
+		void finish() {
+			cleared.forEach((userId, sequence) -> {
+				User user = registry.get(userId);
+				VisitedLocationLog.Snapshot history = user.getLocationHistory();
+				// a snapshot written after the clear has a later end and only holds newer locations
+				if (sequence >= history.getEndSequence()) {
+					locations -= history.size();
+					user.restoreLocationHistory(new double[0], new double[0], new long[0], 0, sequence,
+							Math.min(user.getRewardedLocationCount(), sequence));
+				}
+			});
+			fixes.forEach((userId, userFixes) -> {
+				User user = registry.get(userId);
+				userFixes.sort(Comparator.comparingLong(fix -> fix.sequence));
+				for (Fix fix : userFixes) {
+					// below the end, the location is already restored, cleared or a copy of another record
+					if (fix.sequence >= user.getLocationHistory().getEndSequence()) {
+						user.addToVisitedLocations(new VisitedLocation(userId,
+								new Location(fix.latitude, fix.longitude), toDate(fix.timeMillis)));
+						locations++;
+					}
+				}
+			});
+		}
+	}
+}
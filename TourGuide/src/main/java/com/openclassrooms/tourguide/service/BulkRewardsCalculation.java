@@ -0,0 +1,206 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Reward calculation of a whole population of users, started by
+ * {@link RewardsService#calculateRewardsForAll(Stream, int, int, LongConsumer)}.
+ * <p>
+ * A driver thread reads the users from the stream in chunks and submits each
+ * chunk as a task to a dedicated {@link ForkJoinPool}: idle workers steal the
+ * pending chunks, and the pool never has more threads than its parallelism. A
+ * task evaluates the locations of the users of its chunk one after the other,
+ * then looks up the reward points of all their new rewards in one batch; the
+ * chunk completes once those points are known. The number of chunks waiting
+ * for their points is bounded, so the driver stops reading the stream when
+ * RewardCentral falls behind instead of queuing the whole population.
+ * <p>
+ * Progress is reported after every chunk. {@link #cancel()} stops the
+ * calculation between chunks: the chunks already evaluated complete, the
+ * others are left untouched, so their users are evaluated by the next pass.
+ *
+ * @author Aitor
+ */
+public class BulkRewardsCalculation {
+
+	private final Logger logger = LoggerFactory.getLogger(BulkRewardsCalculation.class);
+	private final RewardsService rewardsService;
+	private final Stream<User> users;
+	private final int chunkSize;
+	private final ForkJoinPool pool;
+	private final Semaphore pendingChunks;
+	private final LongConsumer progress;
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final CompletableFuture<Void> completion = new CompletableFuture<>();
+	private volatile boolean cancelled;
+
+	/**
+	 * Create a calculation, started by {@link #start()}.
+	 *
+	 * @param rewardsService
+	 *            Service evaluating the rewards.
+	 * @param users
+	 *            Users to evaluate, consumed once.
+	 * @param chunkSize
+	 *            Number of users of a chunk.
+	 * @param parallelism
+	 *            Number of threads evaluating the chunks.
+	 * @param progress
+	 *            Receiver of the number of users processed, after every chunk.
+	 */
+	BulkRewardsCalculation(RewardsService rewardsService, Stream<User> users, int chunkSize, int parallelism,
+			LongConsumer progress) {
+		if (chunkSize <= 0 || parallelism <= 0) {
+			throw new IllegalArgumentException(
+					"Invalid bulk settings: chunkSize=" + chunkSize + ", parallelism=" + parallelism);
+		}
+		this.rewardsService = rewardsService;
+		this.users = users;
+		this.chunkSize = chunkSize;
+		this.pool = new ForkJoinPool(parallelism);
+		// enough chunks in flight to keep the workers busy while others wait for RewardCentral
+		this.pendingChunks = new Semaphore(Math.max(4, parallelism * 4));
+		this.progress = progress;
+	}
+
+	BulkRewardsCalculation start() {
+		Thread.ofVirtual().name("rewards-bulk").start(this::drive);
+		return this;
+	}
+
+	/**
+	 * Stop submitting chunks. Completes the calculation with a
+	 * {@link CancellationException} once the submitted ones are done.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Get the completion of the calculation.
+	 *
+	 * @return CompletableFuture completing once every user is processed, or
+	 *         failing with a {@link CancellationException} if the calculation
+	 *         was cancelled; the failures of single users are only counted.
+	 */
+	public CompletableFuture<Void> getCompletion() {
+		return completion;
+	}
+
+	/**
+	 * Get the number of users read from the stream and submitted.
+	 *
+	 * @return Submitted users.
+	 */
+	public long getSubmittedUsers() {
+		return submitted.get();
+	}
+
+	/**
+	 * Get the number of users whose calculation is over, failed or not.
+	 *
+	 * @return Processed users.
+	 */
+	public long getProcessedUsers() {
+		return processed.get();
+	}
+
+	/**
+	 * Get the number of users whose calculation failed; their locations are
+	 * evaluated again by the next pass.
+	 *
+	 * @return Failed users.
+	 */
+	public long getFailedUsers() {
+		return failed.get();
+	}
+
+	private void drive() {
+		long start = System.nanoTime();
+		List<CompletableFuture<Void>> chunks = new ArrayList<>();
+		Throwable error = null;
+		try (users) {
+			Iterator<User> iterator = users.iterator();
+			while (!cancelled && iterator.hasNext()) {
+				List<User> chunk = new ArrayList<>(chunkSize);
+				while (chunk.size() < chunkSize && iterator.hasNext()) {
+					chunk.add(iterator.next());
+				}
+				pendingChunks.acquire();
+				if (cancelled) {
+					break;
+				}
+				submitted.addAndGet(chunk.size());
+				chunks.add(CompletableFuture.supplyAsync(() -> evaluate(chunk), pool)
+						.thenCompose(results -> CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])))
+						.handle((ignored, e) -> {
+							if (e != null) {
+								// the chunk could not be evaluated at all
+								failed.addAndGet(chunk.size());
+								processed.addAndGet(chunk.size());
+							}
+							pendingChunks.release();
+							progress.accept(processed.get());
+							return null;
+						}));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancelled = true;
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		Throwable streamError = error;
+		CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, e) -> {
+			pool.shutdown();
+			logger.info("Calculated the rewards of " + processed.get() + " users (" + failed.get() + " failed) in "
+					+ (System.nanoTime() - start) / 1_000_000 + " ms" + (cancelled ? ", cancelled" : ""));
+			if (streamError != null) {
+				completion.completeExceptionally(streamError);
+			} else if (cancelled) {
+				completion.completeExceptionally(new CancellationException("Bulk reward calculation cancelled"));
+			} else {
+				completion.complete(null);
+			}
+		});
+	}
+
+	// runs on a worker of the pool; the futures complete once the points of the chunk are known
+	private List<CompletableFuture<Void>> evaluate(List<User> chunk) {
+		if (cancelled) {
+			return List.of();
+		}
+		List<CompletableFuture<Void>> results = rewardsService.evaluateRewards(chunk);
+		List<CompletableFuture<Void>> counted = new ArrayList<>(results.size());
+		for (CompletableFuture<Void> result : results) {
+			counted.add(result.handle((ignored, e) -> {
+				if (e != null) {
+					failed.incrementAndGet();
+				}
+				processed.incrementAndGet();
+				return null;
+			}));
+		}
+		return counted;
+	}
+}
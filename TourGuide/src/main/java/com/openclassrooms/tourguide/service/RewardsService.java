@@ -1,31 +1,118 @@
 package com.openclassrooms.tourguide.service;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import org.springframework.stereotype.Service;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.AttractionIds;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.ProximityEngine;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.executor.BoundedExecutor;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
 import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationLog;
 
-@Service
+// defined as a bean by TourGuideModule
 public class RewardsService {
 	private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+	// users per chunk of a bulk calculation: one batch of reward point lookups
+	public static final int DEFAULT_BULK_CHUNK_SIZE = 512;
+	private Logger logger = LoggerFactory.getLogger(RewardsService.class);
 
 	// definition of proximity buffer in miles
 	private int defaultProximityBuffer = 10;
 	private int proximityBuffer = defaultProximityBuffer;
 	private int attractionProximityRange = 200;
+	// only evaluate the visited locations added since the previous pass
+	private boolean incrementalRewards = true;
 
-	private final GpsUtil gpsUtil;
-	private final RewardCentral rewardsCentral;
+	// versioned attractions, loaded once and shared with the other services
+	private final AttractionCatalog attractionCatalog;
+	// asynchronous cache in front of RewardCentral
+	private final RewardPointsCache rewardPointsCache;
+	// bounded executor running the reward calculations
+	private final BoundedExecutor rewardExecutor;
+	// skips the locations that stay close to the last evaluated one
+	private final ProximityEngine proximityEngine;
+	// duration of a calculation and work done by the calculations
+	private final Timer calculationTimer;
+	private final Counter locationsEvaluated;
+	private final Counter locationsSkipped;
+	private final Counter pairsEvaluated;
+	private final Counter rewardsGranted;
 
 	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-		this.gpsUtil = gpsUtil;
-		this.rewardsCentral = rewardCentral;
+		this(gpsUtil, new RewardPointsCache(rewardCentral), defaultRewardExecutor());
+	}
+
+	public RewardsService(GpsUtil gpsUtil, RewardPointsCache rewardPointsCache, BoundedExecutor rewardExecutor) {
+		this(gpsUtil, rewardPointsCache, rewardExecutor, Metrics.globalRegistry);
+	}
 
+	public RewardsService(GpsUtil gpsUtil, RewardPointsCache rewardPointsCache, BoundedExecutor rewardExecutor,
+			MeterRegistry meterRegistry) {
+		this(gpsUtil, rewardPointsCache, rewardExecutor, new ProximityEngine(), meterRegistry);
+	}
+
+	public RewardsService(GpsUtil gpsUtil, RewardPointsCache rewardPointsCache, BoundedExecutor rewardExecutor,
+			ProximityEngine proximityEngine, MeterRegistry meterRegistry) {
+		this(new AttractionCatalog(gpsUtil::getAttractions), rewardPointsCache, rewardExecutor, proximityEngine,
+				meterRegistry);
+	}
+
+	public RewardsService(AttractionCatalog attractionCatalog, RewardPointsCache rewardPointsCache,
+			BoundedExecutor rewardExecutor, ProximityEngine proximityEngine, MeterRegistry meterRegistry) {
+		this.attractionCatalog = attractionCatalog;
+		this.rewardPointsCache = rewardPointsCache;
+		this.rewardExecutor = rewardExecutor;
+		this.proximityEngine = proximityEngine;
+		this.calculationTimer = Timer.builder(TourGuideMetrics.REWARDS_CALCULATION)
+				.description("Time to calculate the rewards of a user, RewardCentral calls included")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		this.locationsEvaluated = Counter.builder(TourGuideMetrics.REWARDS_LOCATIONS)
+				.description("Visited locations evaluated for rewards").register(meterRegistry);
+		this.locationsSkipped = Counter.builder(TourGuideMetrics.REWARDS_LOCATIONS_SKIPPED)
+				.description("Visited locations skipped, too close to an evaluated one to earn a reward")
+				.register(meterRegistry);
+		this.pairsEvaluated = Counter.builder(TourGuideMetrics.REWARDS_PAIRS)
+				.description("Location/attraction pairs within the proximity buffer, not rewarded yet")
+				.register(meterRegistry);
+		this.rewardsGranted = Counter.builder(TourGuideMetrics.REWARDS_GRANTED)
+				.description("Rewards granted to the users").register(meterRegistry);
+	}
+
+	//executor used when none is configured: virtual threads, blocking the caller when full
+	public static BoundedExecutor defaultRewardExecutor() {
+		return new BoundedExecutor("rewards", BoundedExecutor.Mode.VIRTUAL, 2000, 100_000,
+				BoundedExecutor.RejectionPolicy.BLOCK);
 	}
 
 	public void setProximityBuffer(int proximityBuffer) {
@@ -35,37 +122,169 @@ public class RewardsService {
 	public void setDefaultProximityBuffer() {
 		proximityBuffer = defaultProximityBuffer;
 	}
-	//calculates rewards for given user from all visited locations
-	
+
+	public void setIncrementalRewards(boolean incrementalRewards) {
+		this.incrementalRewards = incrementalRewards;
+	}
+
+	public boolean isIncrementalRewards() {
+		return incrementalRewards;
+	}
+	//calculates rewards for given user from the visited locations not evaluated yet
+	//(all of them when the incremental mode is disabled)
 	public void calculateRewards(User user) {
-		List<VisitedLocation> userLocations = user.getVisitedLocations();
-		List<Attraction> attractions = gpsUtil.getAttractions();
-		for (int i = 0; i < userLocations.size(); i++) {
-			for (int j = 0; j < attractions.size(); j++) {
-				Attraction attraction = attractions.get(j);
-				VisitedLocation userLocation = userLocations.get(i);
-				if (nearAttraction(userLocation, attraction)) {
-					user.addUserReward(new UserReward(userLocation, attraction, getRewardPoints(attraction, user)));
-				}
+		evaluateRewards(user).join();
+	}
+	//calculates rewards for given user on the reward executor, without blocking it on RewardCentral
+	public CompletableFuture<Void> calculateRewardsAsync(User user) {
+		return rewardExecutor.supply(() -> evaluateRewards(user)).thenCompose(Function.identity());
+	}
+	//calculates rewards for a batch of users as a single task on the reward executor
+	public CompletableFuture<Void> calculateRewardsAsync(Collection<User> users) {
+		return rewardExecutor.supply(() -> CompletableFuture.allOf(
+				evaluateRewards(users).toArray(new CompletableFuture<?>[0])))
+				.thenCompose(Function.identity());
+	}
+	//calculates rewards for every user of the stream with the default chunk size, on as many threads as processors
+	public BulkRewardsCalculation calculateRewardsForAll(Stream<User> users) {
+		return calculateRewardsForAll(users, DEFAULT_BULK_CHUNK_SIZE, Runtime.getRuntime().availableProcessors(),
+				processed -> {
+				});
+	}
+	//calculates rewards for every user of the stream, in chunks evaluated on a work-stealing pool of the given
+	//parallelism, the points of a chunk being looked up in one batch; progress receives the number of users
+	//processed after each chunk, and the returned calculation can be cancelled between chunks
+	public BulkRewardsCalculation calculateRewardsForAll(Stream<User> users, int chunkSize, int parallelism,
+			LongConsumer progress) {
+		return new BulkRewardsCalculation(this, users, chunkSize, parallelism, progress).start();
+	}
+	//finds the new rewards of the users, looking up the points of all of them at once; the returned futures,
+	//one per user, complete once their points are known
+	List<CompletableFuture<Void>> evaluateRewards(Collection<User> users) {
+		RewardPointsBatch batch = new RewardPointsBatch();
+		List<CompletableFuture<Void>> results = new ArrayList<>(users.size());
+		for (User user : users) {
+			results.add(evaluateRewards(user, batch::request));
+		}
+		batch.lookUp();
+		return results;
+	}
+	//finds the new rewards of the user, the returned future completes once their points are known
+	private CompletableFuture<Void> evaluateRewards(User user) {
+		return evaluateRewards(user, this::getRewardPoints);
+	}
+
+	private CompletableFuture<Void> evaluateRewards(User user,
+			BiFunction<Attraction, User, CompletableFuture<Integer>> rewardPoints) {
+		long start = System.nanoTime();
+		VisitedLocationLog.Snapshot userLocations = user.getLocationHistory();
+		AttractionIndex index = getAttractionIndex();
+		int from = incrementalRewards ? userLocations.indexOf(user.getRewardedLocationCount()) : 0;
+		int to = userLocations.size();
+		long evaluated = userLocations.getEndSequence();
+		// attractions by id in AttractionIds: two bit tests per attraction in range
+		BitSet requested = new BitSet();
+		IntPredicate handled = attractionId -> user.hasUserReward(attractionId) || requested.get(attractionId);
+		List<CompletableFuture<Void>> rewards = new ArrayList<>();
+		// a full pass starts from scratch
+		ProximityEngine.Region region = incrementalRewards ? user.getProximityRegion() : null;
+		int skipped = 0;
+		for (int i = from; i < to; i++) {
+			Location location = userLocations.getLocation(i);
+			if (proximityEngine.isInside(region, index, proximityBuffer, location)) {
+				skipped++;
+				continue;
 			}
+			int fix = i;
+			region = proximityEngine.evaluate(index, proximityBuffer, location, handled, attraction -> {
+				requested.set(AttractionIds.intern(attraction.attractionName));
+				// the visited location is only materialized when it earns a reward
+				VisitedLocation userLocation = userLocations.get(fix);
+				rewards.add(rewardPoints.apply(attraction, user).thenAccept(points -> {
+					if (user.addUserReward(new UserReward(userLocation, attraction, points))) {
+						rewardsGranted.increment();
+					}
+				}));
+			});
 		}
+		user.setProximityRegion(region);
+		locationsEvaluated.increment(Math.max(0, to - from - skipped));
+		locationsSkipped.increment(skipped);
+		pairsEvaluated.increment(requested.cardinality());
+		return CompletableFuture.allOf(rewards.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+			calculationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			if (error == null) {
+				user.advanceRewardedLocationCount(evaluated);
+			} else {
+				// the locations stay below the mark and are evaluated again on the next pass,
+				// without the region that assumed their rewards granted
+				user.setProximityRegion(null);
+				logger.warn("Reward calculation failed for user " + user.getUserName(), error);
+			}
+		});
 	}
-	//calculates rewards for given user from all visited locations in a separate thread
-	public Thread calculateRewardsThread(User user) {
-		return new Thread(() -> calculateRewards(user));
+
+	public ProximityEngine getProximityEngine() {
+		return proximityEngine;
+	}
+
+	public BoundedExecutor getRewardExecutor() {
+		return rewardExecutor;
 	}
 
 	//check if user is within attraction proximity
 	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
-		return getDistance(attraction, location) > attractionProximityRange ? false : true;
+		return getAttractionIndex().isWithin(attraction, location, attractionProximityRange);
+	}
+	//get the index of the current version of the attractions
+	public AttractionIndex getAttractionIndex() {
+		return attractionCatalog.getIndex();
 	}
-	//check if user is near attraction
-	private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-		return getDistance(attraction, visitedLocation.location) > proximityBuffer ? false : true;
+
+	public AttractionCatalog getAttractionCatalog() {
+		return attractionCatalog;
 	}
 	//get reward points for attraction
-	private int getRewardPoints(Attraction attraction, User user) {
-		return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+	private CompletableFuture<Integer> getRewardPoints(Attraction attraction, User user) {
+		return getRewardPoints(attraction, user.getUserId());
+	}
+	//get reward points for attraction without blocking on RewardCentral
+	public CompletableFuture<Integer> getRewardPoints(Attraction attraction, UUID userId) {
+		return rewardPointsCache.getRewardPoints(attraction.attractionId, userId);
+	}
+
+	public RewardPointsCache getRewardPointsCache() {
+		return rewardPointsCache;
+	}
+	//reward points requested by the evaluations of a batch of users, looked up together once all are known;
+	//if the batch fails, each key is looked up on its own so that one failure does not fail every user
+	private final class RewardPointsBatch {
+		private final Map<RewardPointsCache.Key, CompletableFuture<Integer>> requests = new HashMap<>();
+
+		CompletableFuture<Integer> request(Attraction attraction, User user) {
+			return requests.computeIfAbsent(RewardPointsCache.Key.of(attraction.attractionId, user.getUserId()),
+					key -> new CompletableFuture<>());
+		}
+
+		void lookUp() {
+			if (requests.isEmpty()) {
+				return;
+			}
+			rewardPointsCache.getRewardPoints(requests.keySet()).whenComplete((points, error) ->
+					requests.forEach((key, request) -> {
+						if (error == null) {
+							request.complete(points.get(key));
+						} else {
+							rewardPointsCache.getRewardPoints(key).whenComplete((p, e) -> {
+								if (e == null) {
+									request.complete(p);
+								} else {
+									request.completeExceptionally(e);
+								}
+							});
+						}
+					}));
+		}
 	}
 	//calculate distance between 2 locations in miles
 	public double getDistance(Location loc1, Location loc2) {
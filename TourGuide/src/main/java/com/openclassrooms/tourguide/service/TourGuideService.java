@@ -1,33 +1,48 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.attraction.NearbyAttractions;
+import com.openclassrooms.tourguide.cache.NearbyAttractionsCache;
+import com.openclassrooms.tourguide.cache.TripDealsCache;
 import com.openclassrooms.tourguide.dto.NearAttractionDto;
+import com.openclassrooms.tourguide.event.LocationEventBus;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserLoader;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.tracker.LocationPipeline;
 import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
+import com.openclassrooms.tourguide.tracker.TrackingResult;
+import com.openclassrooms.tourguide.user.ShardedUserRegistry;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserRegistry;
 import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationLog;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-
-import java.util.Date;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.stream.IntStream;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 
 import tripPricer.Provider;
 import tripPricer.TripPricer;
@@ -55,9 +70,50 @@ public class TourGuideService {
 	private final RewardsService rewardsService;
 
 	/**
-	 * Trip pricer to get the trip deals for the users.
+	 * Cache in front of the trip pricer, to get the trip deals for the users.
+	 */
+	private final TripDealsCache tripDealsCache;
+
+	/**
+	 * Nearest attractions of the users, refreshed on every new fix.
+	 */
+	private final NearbyAttractionsCache nearbyAttractionsCache;
+
+	/**
+	 * Registry storing the users.
+	 */
+	private final UserRegistry userRegistry;
+
+	/**
+	 * Latency of the GPS calls.
+	 */
+	private final Timer gpsUtilLatency;
+
+	/**
+	 * Executors of the GPS calls, the trip pricer calls and the responses.
 	 */
-	private final TripPricer tripPricer = new TripPricer();
+	private final TourGuideExecutors executors;
+
+	/**
+	 * Pipeline fetching the locations of batches of users.
+	 */
+	private final LocationPipeline locationPipeline;
+
+	/**
+	 * Loader of the internal users in test mode.
+	 */
+	private final InternalUserLoader internalUserLoader;
+
+	/**
+	 * Bus of the location events: every new fix is published to it.
+	 */
+	private final LocationEventBus locationEvents;
+
+	/**
+	 * Resources created by the service itself rather than injected, closed by
+	 * {@link #shutdown()} in this order.
+	 */
+	private final List<AutoCloseable> ownedResources = new ArrayList<>();
 
 	/**
 	 * Tracker to track the user location.
@@ -78,22 +134,106 @@ public class TourGuideService {
 	 *            Service to calculate the rewards of the users.
 	 */
 	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
+		this(gpsUtil, rewardsService, new TripPricer(), new ShardedUserRegistry(), new TrackerSettings());
+	}
+
+	/**
+	 * Constructor to initialize the service with a given trip pricer, user
+	 * registry and tracker settings.
+	 *
+	 * @param gpsUtil
+	 *            GPS utility to get the user location.
+	 * @param rewardsService
+	 *            Service to calculate the rewards of the users.
+	 * @param tripPricer
+	 *            Trip pricer to get the trip deals for the users.
+	 * @param userRegistry
+	 *            Registry storing the users.
+	 * @param trackerSettings
+	 *            Settings of the tracker.
+	 */
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer,
+			UserRegistry userRegistry, TrackerSettings trackerSettings) {
+		this(gpsUtil, rewardsService, tripPricer, userRegistry, trackerSettings, TourGuideExecutors.defaults());
+		// after the event bus: responses first, then the work they may still submit
+		ownedResources.add(executors.getRequest());
+		ownedResources.add(executors.getPricing());
+		ownedResources.add(executors.getGps());
+	}
+
+	/**
+	 * Constructor putting a trip deals cache with the default settings in front
+	 * of the trip pricer, on the pricing executor, and keeping the nearest
+	 * attractions of the users with the default staleness.
+	 */
+	private TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer,
+			UserRegistry userRegistry, TrackerSettings trackerSettings, TourGuideExecutors executors) {
+		this(gpsUtil, rewardsService, new TripDealsCache(tripPricer, executors.getPricing()),
+				new NearbyAttractionsCache(rewardsService.getAttractionCatalog()::getIndex, NEARBY_ATTRACTIONS), userRegistry,
+				trackerSettings, executors, new InternalUserLoader(), new LocationEventBus(), Metrics.globalRegistry);
+		ownedResources.add(locationEvents);
+	}
+
+	/**
+	 * Constructor to initialize the service with given executors, publishing
+	 * its metrics and the ones of its tracker to a given registry.
+	 *
+	 * @param gpsUtil
+	 *            GPS utility to get the user location.
+	 * @param rewardsService
+	 *            Service to calculate the rewards of the users.
+	 * @param tripDealsCache
+	 *            Cache in front of the trip pricer.
+	 * @param nearbyAttractionsCache
+	 *            Nearest attractions of the users, consumer of the location events.
+	 * @param userRegistry
+	 *            Registry storing the users.
+	 * @param trackerSettings
+	 *            Settings of the tracker.
+	 * @param executors
+	 *            Executors of the GPS calls, the trip pricer calls and the responses.
+	 * @param internalUserLoader
+	 *            Loader of the internal users in test mode.
+	 * @param locationEvents
+	 *            Bus of the location events, consumed by the rewards and the
+	 *            nearest attractions.
+	 * @param meterRegistry
+	 *            Registry of the metrics.
+	 */
+	@Autowired
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripDealsCache tripDealsCache,
+			NearbyAttractionsCache nearbyAttractionsCache, UserRegistry userRegistry, TrackerSettings trackerSettings, TourGuideExecutors executors,
+			InternalUserLoader internalUserLoader, LocationEventBus locationEvents, MeterRegistry meterRegistry) {
 		this.gpsUtil = gpsUtil;
 		this.rewardsService = rewardsService;
+		this.tripDealsCache = tripDealsCache;
+		this.nearbyAttractionsCache = nearbyAttractionsCache;
+		this.userRegistry = userRegistry;
+		this.gpsUtilLatency = TourGuideMetrics.externalCallTimer(meterRegistry, "gpsUtil");
+		this.executors = executors;
+		this.internalUserLoader = internalUserLoader;
+		this.locationEvents = locationEvents;
+		// rewards are calculated in batches of users with new fixes, off the GPS threads
+		locationEvents.subscribe("rewards", rewardsService::calculateRewardsAsync);
+		locationEvents.subscribe("nearby", nearbyAttractionsCache);
+		this.locationPipeline = new LocationPipeline(this::fetchUserLocation, this::recordFixes, executors.getGps(),
+				LocationPipeline.DEFAULT_BATCH_SIZE);
 
 		// Set the default locale to US.
 		Locale.setDefault(Locale.US);
 
-		if (testMode) {
+		if (testMode && userRegistry.size() > 0) {
+			// Users restored from the journal: keep them instead of generating new ones.
+			logger.info("TestMode enabled, " + userRegistry.size() + " users restored");
+		} else if (testMode) {
 			// Log information about the test mode.
 			logger.info("TestMode enabled");
 			logger.debug("Initializing users");
 			initializeInternalUsers();
-			logger.debug("Finished initializing users");
 		}
 
 		// Initialize the tracker.
-		tracker = new Tracker(this);
+		tracker = new Tracker(this, trackerSettings, meterRegistry);
 
 		// Add a shutdown hook to stop the tracker when the application is closed.
 		addShutDownHook();
@@ -115,15 +255,12 @@ public class TourGuideService {
 	 *
 	 * @param user
 	 *            User to get the location.
-	 * @return CompletableFuture with the location of the user.
-	 * @throws InterruptedException
-	 *             If the thread is interrupted.
-	 * @throws ExecutionException
-	 *             If an error occurs while executing the future.
+	 * @return CompletableFuture with the location of the user, already complete
+	 *         unless GpsUtil has to be called on the GPS executor.
 	 */
-	public CompletableFuture<VisitedLocation> getUserLocation(User user) throws InterruptedException, ExecutionException {
+	public CompletableFuture<VisitedLocation> getUserLocation(User user) {
 		if (user.getVisitedLocations().size() > 0) {
-			return CompletableFuture.supplyAsync(() -> user.getLastVisitedLocation());
+			return CompletableFuture.completedFuture(user.getLastVisitedLocation());
 		} else {
 			CompletableFuture<VisitedLocation> visitedLocation = trackUserLocation(user);
 			
@@ -139,49 +276,94 @@ public class TourGuideService {
 	 * @return User with the given username.
 	 */
 	public User getUser(String userName) {
-		return internalUserMap.get(userName);
+		return userRegistry.get(userName);
+	}
+
+	/**
+	 * Get the user by id.
+	 *
+	 * @param userId
+	 *            Id of the user to get.
+	 * @return User with the given id.
+	 */
+	public User getUser(UUID userId) {
+		return userRegistry.get(userId);
 	}
 
 	/**
-	 * Get all the users.
+	 * Get all the users. This copies the whole registry, prefer
+	 * {@link #getUserRegistry()} to walk the users.
 	 *
 	 * @return List of all users.
 	 */
 	public List<User> getAllUsers() {
-		return internalUserMap.values().stream().toList();
+		return userRegistry.stream().toList();
 	}
 
 	/**
-	 * Add a user to the internal user map.
+	 * Get the executors of the service.
+	 *
+	 * @return Executors of the GPS calls, the trip pricer calls and the responses.
+	 */
+	public TourGuideExecutors getExecutors() {
+		return executors;
+	}
+
+	/**
+	 * Get the bus of the location events, to subscribe other handlers.
+	 *
+	 * @return Location event bus.
+	 */
+	public LocationEventBus getLocationEvents() {
+		return locationEvents;
+	}
+
+	/**
+	 * Get the registry storing the users.
+	 *
+	 * @return User registry.
+	 */
+	public UserRegistry getUserRegistry() {
+		return userRegistry;
+	}
+
+	/**
+	 * Add a user to the user registry.
 	 *
 	 * @param user
 	 *            User to add.
 	 */
 	public void addUser(User user) {
-		if (!internalUserMap.containsKey(user.getUserName())) {
-			internalUserMap.put(user.getUserName(), user);
-		}
+		userRegistry.add(user);
 	}
 
 	/**
-	 * Get the trip deals for the user.
+	 * Get the trip deals for the user, waiting for them.
 	 *
 	 * @param user
 	 *            User to get the trip deals.
 	 * @return List of trip deals.
 	 */
 	public List<Provider> getTripDeals(User user) {
-		Map<String, UserReward> userRewards = user.getUserRewards();
-		
-		int cumulatativeRewardPoints = 0;
-		for (UserReward userReward : userRewards.values()) {
-			cumulatativeRewardPoints += cumulatativeRewardPoints + userReward.getRewardPoints();
-		}
-		List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(),
-				user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
-				user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
-		user.setTripDeals(providers);
-		return providers;
+		return getTripDealsAsync(user).join();
+	}
+
+	/**
+	 * Get the trip deals for the user without blocking: a cached price is
+	 * returned right away, a new one is computed on the pricing executor.
+	 *
+	 * @param user
+	 *            User to get the trip deals.
+	 * @return CompletableFuture with the trip deals.
+	 */
+	public CompletableFuture<List<Provider>> getTripDealsAsync(User user) {
+		UserPreferences preferences = user.getUserPreferences();
+		return tripDealsCache.getPrice(tripPricerApiKey, user.getUserId(), preferences.getNumberOfAdults(),
+				preferences.getNumberOfChildren(), preferences.getTripDuration(), user.getCumulativeRewardPoints())
+				.thenApply(providers -> {
+					user.setTripDeals(providers);
+					return providers;
+				});
 	}
 
 	/**
@@ -193,125 +375,195 @@ public class TourGuideService {
 	 */
 	public CompletableFuture<VisitedLocation> trackUserLocation(User user) {
 		
-		return CompletableFuture.supplyAsync(() -> {
-			VisitedLocation newLocation = gpsUtil.getUserLocation(user.getUserId());
+		return executors.getGps().supply(() -> {
+			VisitedLocation newLocation = fetchUserLocation(user.getUserId());
 			user.addToVisitedLocations(newLocation);
-			rewardsService.calculateRewardsThread(user).start();
+			locationEvents.publish(user);
 			return newLocation;
 		});
 	}
 
 	/**
-	 * Get the nearby attractions of the user.
+	 * Default maximum number of location requests in flight for
+	 * {@link #trackUserLocations(Collection)}.
+	 */
+	public static final int DEFAULT_MAX_LOCATIONS_IN_FLIGHT = 500;
+
+	/**
+	 * Track the location of a batch of users. Their fixes are appended and their
+	 * rewards enqueued in batches, instead of one future per user.
 	 *
-	 * @param CompletableFuture with the visitedLocation
-	 *            Visited location of the user.
-	 * @return Array of nearby attractions.
+	 * @param users
+	 *            Users to track.
+	 * @return CompletableFuture with the new location or the error of every user.
 	 */
-	public CompletableFuture<NearAttractionDto[]> getNearByAttractions(CompletableFuture<VisitedLocation> visitedLocationf) {
-		return visitedLocationf.thenApplyAsync(visitedLocation -> {
-			List<Attraction> Attractions = gpsUtil.getAttractions();
-		NearAttractionDto[] nearByAttractions = new NearAttractionDto[5];
-		Attractions.sort((o1, o2) -> {
-			double l1 = rewardsService.getDistance(o1, visitedLocation.location);
-			double l2 = rewardsService.getDistance(o2, visitedLocation.location);
-			return Double.compare(l1, l2);
-		});
-		
-		for (int i = 0; i < nearByAttractions.length; i++) {
-			NearAttractionDto nearAttractionDto = new NearAttractionDto();
-			nearAttractionDto.setUserLocations(visitedLocation.location);
-			nearAttractionDto.setDistance(rewardsService.getDistance(Attractions.get(i), visitedLocation.location));
-		}
-		return nearByAttractions;
-		});
-		
+	public CompletableFuture<TrackingResult> trackUserLocations(Collection<User> users) {
+		return trackUserLocations(users, DEFAULT_MAX_LOCATIONS_IN_FLIGHT);
 	}
 
 	/**
-	 * Add a shutdown hook to stop the tracker when the application is closed.
+	 * Track the location of a batch of users with a given number of location
+	 * requests in flight.
+	 *
+	 * @param users
+	 *            Users to track.
+	 * @param maxInFlight
+	 *            Maximum number of location requests in flight, further
+	 *            bounded by the concurrency of the GPS executor.
+	 * @return CompletableFuture with the new location or the error of every user.
 	 */
-	private void addShutDownHook() {
-		Runtime.getRuntime().addShutdownHook(new Thread() {
-			public void run() {
-				tracker.stopTracking();
-			}
-		});
+	public CompletableFuture<TrackingResult> trackUserLocations(Collection<User> users, int maxInFlight) {
+		return locationPipeline.track(users, maxInFlight);
 	}
 
 	/**
-	 * Methods below: For internal testing
+	 * Get the current location of a user from the GPS.
+	 *
+	 * @param userId
+	 *            Id of the user.
+	 * @return Current location of the user.
 	 */
+	private VisitedLocation fetchUserLocation(UUID userId) {
+		return gpsUtilLatency.record(() -> gpsUtil.getUserLocation(userId));
+	}
 
 	/**
-	 * API key to get the trip deals.
+	 * Append a batch of fixes to their users and publish their location events.
+	 *
+	 * @param fixes
+	 *            New locations of the users.
 	 */
-	private static final String tripPricerApiKey = "test-server-api-key";
+	private void recordFixes(List<LocationPipeline.Fix> fixes) {
+		for (LocationPipeline.Fix fix : fixes) {
+			fix.getUser().addToVisitedLocations(fix.getVisitedLocation());
+			locationEvents.publish(fix.getUser());
+		}
+	}
 
 	/**
-	 * Map to store the internal users.
+	 * Number of attractions returned by {@link #getNearByAttractions(User)}.
 	 */
-	private final Map<String, User> internalUserMap = new HashMap<>();
+	public static final int NEARBY_ATTRACTIONS = 5;
 
 	/**
-	 * Initialize the internal users.
+	 * Get the attractions nearest to the last location of the user, whatever
+	 * their distance, with the reward points the user would earn there.
+	 * <p>
+	 * The attractions and distances come from the snapshot kept up to date by
+	 * the location events; the GPS is only called if the user has no location
+	 * yet.
+	 *
+	 * @param user
+	 *            User to get the attractions.
+	 * @return CompletableFuture with the nearby attractions, nearest first.
 	 */
-	private void initializeInternalUsers() {
-		IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
-			String userName = "internalUser" + i;
-			String phone = "000";
-			String email = userName + "@tourGuide.com";
-			User user = new User(UUID.randomUUID(), userName, phone, email);
-			generateUserLocationHistory(user);
-
-			internalUserMap.put(userName, user);
-		});
-		logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
+	public CompletableFuture<NearAttractionDto[]> getNearByAttractions(User user) {
+		NearbyAttractions nearby = nearbyAttractionsCache.get(user);
+		if (nearby != null) {
+			return toNearAttractions(nearby, user.getUserId());
+		}
+		return trackUserLocation(user).thenComposeAsync(
+				visitedLocation -> toNearAttractions(nearbyAttractionsCache.get(user), user.getUserId()),
+				executors.getRequest());
 	}
 
 	/**
-	 * Generate a random user location history.
+	 * Get the attractions nearest to a location of the user, whatever their
+	 * distance, with the reward points the user would earn there. The
+	 * distances are computed for this call.
 	 *
-	 * @param user
-	 *            User to generate the location history.
+	 * @param visitedLocationf
+	 *            CompletableFuture with the visited location of the user.
+	 * @return CompletableFuture with the nearby attractions, nearest first.
 	 */
-	private void generateUserLocationHistory(User user) {
-		IntStream.range(0, 3).forEach(i -> {
-			user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
-					new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime()));
-		});
+	public CompletableFuture<NearAttractionDto[]> getNearByAttractions(CompletableFuture<VisitedLocation> visitedLocationf) {
+		// the response is assembled on the request executor, not on the thread that got the location
+		return visitedLocationf.thenComposeAsync(visitedLocation -> {
+			Location location = visitedLocation.location;
+			long time = visitedLocation.timeVisited == null ? VisitedLocationLog.NO_TIME
+					: visitedLocation.timeVisited.getTime();
+			NearbyAttractions nearby = NearbyAttractions.of(rewardsService.getAttractionCatalog().getIndex(), location.latitude,
+					location.longitude, NEARBY_ATTRACTIONS, 0, time);
+			return toNearAttractions(nearby, visitedLocation.userId);
+		}, executors.getRequest());
+	}
+
+	private CompletableFuture<NearAttractionDto[]> toNearAttractions(NearbyAttractions nearby, UUID userId) {
+		List<Attraction> attractions = nearby.getIndex().getAttractions();
+		Location userLocation = nearby.getLocation();
+		NearAttractionDto[] nearByAttractions = new NearAttractionDto[nearby.size()];
+		CompletableFuture<?>[] rewardPoints = new CompletableFuture<?>[nearby.size()];
+		for (int i = 0; i < nearby.size(); i++) {
+			Attraction attraction = attractions.get(nearby.getAttraction(i));
+			NearAttractionDto nearAttractionDto = new NearAttractionDto();
+			nearAttractionDto.setTouristAttractionName(attraction.attractionName);
+			nearAttractionDto.setTouristAttractionLocation(new Location(attraction.latitude, attraction.longitude));
+			nearAttractionDto.setUserLocations(userLocation);
+			nearAttractionDto.setDistance(nearby.getDistance(i));
+			nearByAttractions[i] = nearAttractionDto;
+			// the reward points of the attractions are fetched in parallel
+			rewardPoints[i] = rewardsService.getRewardPoints(attraction, userId)
+					.thenAccept(nearAttractionDto::setRewardPoints);
+		}
+		return CompletableFuture.allOf(rewardPoints).thenApply(done -> nearByAttractions);
 	}
 
 	/**
-	 * Generate a random latitude.
-	 *
-	 * @return Random latitude.
+	 * Stop the tracker, before Spring drains the executors, then close the
+	 * resources the service created itself; the injected ones are left to
+	 * their owner. Safe to call more than once.
 	 */
-	private double generateRandomLatitude() {
-		double leftLimit = -85.05112878;
-		double rightLimit = 85.05112878;
-		return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+	@PreDestroy
+	public void shutdown() {
+		tracker.stopTracking();
+		List<AutoCloseable> resources;
+		synchronized (ownedResources) {
+			resources = new ArrayList<>(ownedResources);
+			ownedResources.clear();
+		}
+		for (AutoCloseable resource : resources) {
+			try {
+				resource.close();
+			} catch (Exception e) {
+				logger.warn("Failed to close " + resource, e);
+			}
+		}
 	}
 
 	/**
-	 * Generate a random longitude.
-	 *
-	 * @return Random longitude.
+	 * Add a shutdown hook to stop the tracker when the application is closed.
 	 */
-	private double generateRandomLongitude() {
-		double leftLimit = -180;
-		double rightLimit = 180;
-		return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+	private void addShutDownHook() {
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				shutdown();
+			}
+		});
 	}
 
 	/**
-	 * Generate a random time.
-	 *
-	 * @return Random time.
+	 * Methods below: For internal testing
 	 */
-	private Date getRandomTime() {
-		LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-		return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
+
+	/**
+	 * API key to get the trip deals.
+	 */
+	private static final String tripPricerApiKey = "test-server-api-key";
+
+	/**
+	 * Initialize the internal users, in the background if the loader is
+	 * asynchronous.
+	 */
+	private void initializeInternalUsers() {
+		long start = System.nanoTime();
+		internalUserLoader.load(userRegistry, InternalTestHelper.getInternalUserNumber())
+				.whenComplete((count, error) -> {
+					if (error != null) {
+						logger.error("Failed to initialize the internal test users", error);
+					} else {
+						logger.debug("Created " + count + " internal test users in "
+								+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+					}
+				});
 	}
 }
-
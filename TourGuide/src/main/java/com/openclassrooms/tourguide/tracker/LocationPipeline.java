@@ -0,0 +1,161 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Fetches the locations of a batch of users with a bounded number of requests
+ * in flight.
+ * <p>
+ * Instead of one task per user, {@code maxInFlight} workers pull the next user
+ * from the batch as soon as their previous fix arrives, so the GPS stays busy
+ * without queuing thousands of tasks. The fixes of all the workers are
+ * gathered and handed to the sink {@code batchSize} at a time; the sink
+ * appends them to the users and enqueues their reward calculations. The
+ * remaining fixes are flushed before the returned future completes.
+ *
+ * @author Aitor
+ */
+public class LocationPipeline {
+
+	/**
+	 * Default number of fixes handed to the sink at once.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	private final Function<UUID, VisitedLocation> locationSource;
+	private final Consumer<List<Fix>> sink;
+	private final Executor executor;
+	private final int batchSize;
+
+	/**
+	 * Create the pipeline.
+	 *
+	 * @param locationSource
+	 *            Blocking call returning the current location of a user.
+	 * @param sink
+	 *            Receives the fixes, in batches.
+	 * @param executor
+	 *            Executor running the workers, ideally on virtual threads.
+	 * @param batchSize
+	 *            Number of fixes handed to the sink at once.
+	 */
+	public LocationPipeline(Function<UUID, VisitedLocation> locationSource, Consumer<List<Fix>> sink,
+			Executor executor, int batchSize) {
+		this.locationSource = locationSource;
+		this.sink = sink;
+		this.executor = executor;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Track the location of a batch of users.
+	 *
+	 * @param users
+	 *            Users to track.
+	 * @param maxInFlight
+	 *            Maximum number of location requests in flight.
+	 * @return CompletableFuture completed once every user is tracked or failed
+	 *         and every fix has been handed to the sink.
+	 */
+	public CompletableFuture<TrackingResult> track(Collection<User> users, int maxInFlight) {
+		if (maxInFlight <= 0) {
+			throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+		}
+		Run run = new Run(users.toArray(new User[0]));
+		int workers = Math.min(maxInFlight, run.users.length);
+		CompletableFuture<?>[] done = new CompletableFuture<?>[workers];
+		for (int i = 0; i < workers; i++) {
+			done[i] = CompletableFuture.runAsync(run::work, executor);
+		}
+		return CompletableFuture.allOf(done).thenApply(ignored -> {
+			run.flush(Integer.MAX_VALUE);
+			return new TrackingResult(run.locations, run.failures);
+		});
+	}
+
+	/**
+	 * A new location of a user.
+	 */
+	public static final class Fix {
+		private final User user;
+		private final VisitedLocation visitedLocation;
+
+		Fix(User user, VisitedLocation visitedLocation) {
+			this.user = user;
+			this.visitedLocation = visitedLocation;
+		}
+
+		public User getUser() {
+			return user;
+		}
+
+		public VisitedLocation getVisitedLocation() {
+			return visitedLocation;
+		}
+	}
+
+	/**
+	 * State of one call to {@link #track(Collection, int)}.
+	 */
+	private final class Run {
+		final User[] users;
+		final AtomicInteger next = new AtomicInteger();
+		final Queue<Fix> fixes = new ConcurrentLinkedQueue<>();
+		final AtomicInteger fixCount = new AtomicInteger();
+		final Map<UUID, VisitedLocation> locations = new ConcurrentHashMap<>();
+		final Map<UUID, Throwable> failures = new ConcurrentHashMap<>();
+
+		Run(User[] users) {
+			this.users = users;
+		}
+
+		void work() {
+			for (int i = next.getAndIncrement(); i < users.length; i = next.getAndIncrement()) {
+				User user = users[i];
+				try {
+					fixes.add(new Fix(user, locationSource.apply(user.getUserId())));
+				} catch (RuntimeException e) {
+					failures.put(user.getUserId(), e);
+					continue;
+				}
+				// the worker completing a batch hands it to the sink
+				if (fixCount.incrementAndGet() % batchSize == 0) {
+					flush(batchSize);
+				}
+			}
+		}
+
+		void flush(int max) {
+			List<Fix> batch = new ArrayList<>(Math.min(max, batchSize));
+			Fix fix;
+			while (batch.size() < max && (fix = fixes.poll()) != null) {
+				batch.add(fix);
+			}
+			if (batch.isEmpty()) {
+				return;
+			}
+			try {
+				sink.accept(batch);
+				batch.forEach(f -> locations.put(f.user.getUserId(), f.visitedLocation));
+			} catch (RuntimeException e) {
+				batch.forEach(f -> failures.put(f.user.getUserId(), e));
+			}
+		}
+	}
+}
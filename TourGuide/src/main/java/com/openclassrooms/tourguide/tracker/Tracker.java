@@ -1,28 +1,85 @@
 package com.openclassrooms.tourguide.tracker;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 
-public class Tracker extends Thread {
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Periodically tracks the location of every user.
+ * <p>
+ * Each cycle splits the users into {@link TrackerSettings#getPartitions()}
+ * partitions of the user registry and starts them evenly over the polling
+ * interval instead of tracking everybody at once. The users of a partition
+ * are tracked as one batch, with at most
+ * {@link TrackerSettings#getMaxConcurrency()} location requests in flight. When a cycle is complete its {@link TrackerCycleStats} are logged
+ * and the next cycle is scheduled one polling interval after the start of the
+ * previous one, or right away if the cycle overran the interval.
+ * <p>
+ * The duration of the cycles, the tracked and failed users and, for the last
+ * cycle, the partition lag and the throughput are published to the meter
+ * registry.
+ */
+public class Tracker {
 	private Logger logger = LoggerFactory.getLogger(Tracker.class);
-	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
-	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+	private final ScheduledExecutorService scheduler = Executors
+			.newSingleThreadScheduledExecutor(r -> new Thread(r, "tracker"));
 	private final TourGuideService tourGuideService;
-	private boolean stop = false;
+	private final TrackerSettings settings;
+	private final AtomicLong cycleCounter = new AtomicLong();
+	private volatile boolean stop = false;
+	private volatile TrackerCycleStats lastCycleStats;
+	private final Timer cycleTimer;
+	private final Counter trackedUsers;
+	private final Counter failedUsers;
 
 	public Tracker(TourGuideService tourGuideService) {
+		this(tourGuideService, new TrackerSettings());
+	}
+
+	public Tracker(TourGuideService tourGuideService, TrackerSettings settings) {
+		this(tourGuideService, settings, Metrics.globalRegistry);
+	}
+
+	public Tracker(TourGuideService tourGuideService, TrackerSettings settings, MeterRegistry meterRegistry) {
 		this.tourGuideService = tourGuideService;
+		this.settings = settings;
+		this.cycleTimer = Timer.builder(TourGuideMetrics.TRACKER_CYCLE)
+				.description("Time between the start of a tracker cycle and the completion of its last user")
+				.register(meterRegistry);
+		this.trackedUsers = Counter.builder(TourGuideMetrics.TRACKER_USERS).tag("outcome", "tracked")
+				.description("Users tracked by the tracker").register(meterRegistry);
+		this.failedUsers = Counter.builder(TourGuideMetrics.TRACKER_USERS).tag("outcome", "failed")
+				.description("Users tracked by the tracker").register(meterRegistry);
+		Gauge.builder(TourGuideMetrics.TRACKER_LAG, this,
+				tracker -> tracker.lastCycle(TrackerCycleStats::getMaxLagMillis))
+				.description("Largest partition start delay of the last cycle").baseUnit("milliseconds")
+				.register(meterRegistry);
+		Gauge.builder(TourGuideMetrics.TRACKER_THROUGHPUT, this,
+				tracker -> tracker.lastCycle(TrackerCycleStats::getThroughput))
+				.description("Users tracked per second during the last cycle").baseUnit("users/s")
+				.register(meterRegistry);
 
-		executorService.submit(this);
+		long now = System.nanoTime();
+		scheduler.execute(() -> startCycle(now));
 	}
 
 	/**
@@ -30,36 +87,136 @@ public class Tracker extends Thread {
 	 */
 	public void stopTracking() {
 		stop = true;
-		executorService.shutdownNow();
+		scheduler.shutdownNow();
 	}
 
-	@Override
-	public void run() {
-		StopWatch stopWatch = new StopWatch();
-		while (true) {
-			if (Thread.currentThread().isInterrupted() || stop) {
-				logger.debug("Tracker stopping");
-				System.out.println("Tracker stopping");
-				break;
-			}
+	/**
+	 * Get the figures of the last completed cycle.
+	 *
+	 * @return Stats of the last cycle, or null if no cycle completed yet.
+	 */
+	public TrackerCycleStats getLastCycleStats() {
+		return lastCycleStats;
+	}
+
+	public TrackerSettings getSettings() {
+		return settings;
+	}
+
+	private double lastCycle(ToDoubleFunction<TrackerCycleStats> figure) {
+		TrackerCycleStats stats = lastCycleStats;
+		return stats == null ? Double.NaN : figure.applyAsDouble(stats);
+	}
+
+	private void startCycle(long plannedStart) {
+		if (stop) {
+			logger.debug("Tracker stopping");
+			return;
+		}
+		long now = System.nanoTime();
+		Cycle cycle = new Cycle(cycleCounter.getAndIncrement(), Math.max(plannedStart, now), now - plannedStart);
+		logger.debug("Begin Tracker cycle " + cycle.number + ". Tracking "
+				+ tourGuideService.getUserRegistry().size() + " users.");
+		dispatchPartition(cycle, 0);
+	}
 
-			List<User> users = tourGuideService.getAllUsers();
-			System.out.println("users size is " + users.size());
-			logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
-			stopWatch.start();
-			users.forEach(u -> {
-				tourGuideService.trackUserLocation(u).join();
-			});
-			stopWatch.stop();
-			logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-			stopWatch.reset();
-			try {
-				logger.debug("Tracker sleeping");
-				TimeUnit.SECONDS.sleep(trackingPollingInterval);
-			} catch (InterruptedException e) {
-				break;
+	private void dispatchPartition(Cycle cycle, int partition) {
+		if (stop) {
+			return;
+		}
+		cycle.recordLag(System.nanoTime() - plannedPartitionStart(cycle, partition));
+		List<User> users = tourGuideService.getUserRegistry().partition(partition, settings.getPartitions()).toList();
+		cycle.pending.incrementAndGet();
+		track(users).whenComplete((result, error) -> {
+			if (error != null) {
+				cycle.failed.addAndGet(users.size());
+				failedUsers.increment(users.size());
+				logger.debug("Tracking of partition " + partition + " failed: " + error);
+			} else {
+				cycle.tracked.addAndGet(result.getTrackedCount());
+				cycle.failed.addAndGet(result.getFailedCount());
+				trackedUsers.increment(result.getTrackedCount());
+				failedUsers.increment(result.getFailedCount());
+				if (result.getFailedCount() > 0) {
+					logger.debug("Tracking of partition " + partition + ": " + result);
+				}
 			}
+			cycle.done();
+		});
+		if (partition + 1 < settings.getPartitions()) {
+			long delay = plannedPartitionStart(cycle, partition + 1) - System.nanoTime();
+			schedule(() -> dispatchPartition(cycle, partition + 1), delay);
+		} else {
+			cycle.done();
 		}
+	}
 
+	private CompletableFuture<TrackingResult> track(List<User> users) {
+		try {
+			return tourGuideService.trackUserLocations(users, settings.getMaxConcurrency());
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	private void completeCycle(Cycle cycle) {
+		long now = System.nanoTime();
+		long interval = settings.getPollingInterval().toNanos();
+		TrackerCycleStats stats = new TrackerCycleStats(cycle.number, cycle.tracked.get(), cycle.failed.get(),
+				TimeUnit.NANOSECONDS.toMillis(now - cycle.start), TimeUnit.NANOSECONDS.toMillis(cycle.maxLag.get()),
+				TimeUnit.NANOSECONDS.toMillis(Math.max(0, now - cycle.start - interval)));
+		lastCycleStats = stats;
+		cycleTimer.record(stats.getDurationMillis(), TimeUnit.MILLISECONDS);
+		if (stats.getOverrunMillis() > 0) {
+			logger.warn("Tracker overran its polling interval: " + stats);
+		} else {
+			logger.debug("Tracker " + stats);
+		}
+		long nextStart = cycle.start + interval;
+		schedule(() -> startCycle(nextStart), nextStart - now);
+	}
+
+	private long plannedPartitionStart(Cycle cycle, int partition) {
+		return cycle.start + settings.getPollingInterval().toNanos() / settings.getPartitions() * partition;
+	}
+
+	private void schedule(Runnable task, long delayNanos) {
+		if (stop) {
+			return;
+		}
+		try {
+			scheduler.schedule(task, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+		} catch (RejectedExecutionException e) {
+			logger.debug("Tracker stopping");
+		}
+	}
+
+	/**
+	 * Progress of one tracking cycle.
+	 */
+	private final class Cycle {
+		final long number;
+		final long start;
+		// one extra count held by the dispatcher until every partition is dispatched
+		final AtomicInteger pending = new AtomicInteger(1);
+		final AtomicInteger tracked = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		final AtomicLong maxLag = new AtomicLong();
+
+		Cycle(long number, long start, long startLag) {
+			this.number = number;
+			this.start = start;
+			recordLag(startLag);
+		}
+
+		void recordLag(long lag) {
+			maxLag.accumulateAndGet(lag, Math::max);
+		}
+
+		void done() {
+			if (pending.decrementAndGet() == 0) {
+				completeCycle(this);
+			}
+		}
 	}
 }
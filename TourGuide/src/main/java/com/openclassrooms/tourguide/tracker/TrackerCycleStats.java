@@ -0,0 +1,81 @@
+package com.openclassrooms.tourguide.tracker;
+
+/**
+ * Figures about one completed tracking cycle.
+ *
+ * @author Aitor
+ */
+public class TrackerCycleStats {
+
+	private final long cycle;
+	private final int trackedUsers;
+	private final int failedUsers;
+	private final long durationMillis;
+	private final long maxLagMillis;
+	private final long overrunMillis;
+
+	public TrackerCycleStats(long cycle, int trackedUsers, int failedUsers, long durationMillis, long maxLagMillis,
+			long overrunMillis) {
+		this.cycle = cycle;
+		this.trackedUsers = trackedUsers;
+		this.failedUsers = failedUsers;
+		this.durationMillis = durationMillis;
+		this.maxLagMillis = maxLagMillis;
+		this.overrunMillis = overrunMillis;
+	}
+
+	/**
+	 * @return Number of the cycle, starting at 0.
+	 */
+	public long getCycle() {
+		return cycle;
+	}
+
+	/**
+	 * @return Number of users whose location was tracked.
+	 */
+	public int getTrackedUsers() {
+		return trackedUsers;
+	}
+
+	/**
+	 * @return Number of users whose tracking failed.
+	 */
+	public int getFailedUsers() {
+		return failedUsers;
+	}
+
+	/**
+	 * @return Time between the start of the cycle and the completion of its last user.
+	 */
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * @return Largest delay between the planned and the actual start of a partition.
+	 */
+	public long getMaxLagMillis() {
+		return maxLagMillis;
+	}
+
+	/**
+	 * @return Time by which the cycle exceeded the polling interval, 0 if it did not.
+	 */
+	public long getOverrunMillis() {
+		return overrunMillis;
+	}
+
+	/**
+	 * @return Tracked users per second.
+	 */
+	public double getThroughput() {
+		return durationMillis == 0 ? trackedUsers : trackedUsers * 1000.0 / durationMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("cycle %d: %d users (%d failed) in %d ms, %.1f users/s, max lag %d ms, overrun %d ms",
+				cycle, trackedUsers, failedUsers, durationMillis, getThroughput(), maxLagMillis, overrunMillis);
+	}
+}
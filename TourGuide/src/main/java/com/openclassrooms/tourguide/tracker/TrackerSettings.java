@@ -0,0 +1,70 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link Tracker}.
+ *
+ * @author Aitor
+ */
+public class TrackerSettings {
+
+	/**
+	 * Default time between the start of two tracking cycles.
+	 */
+	public static final Duration DEFAULT_POLLING_INTERVAL = Duration.ofMinutes(5);
+
+	/**
+	 * Default number of partitions a cycle is split into.
+	 */
+	public static final int DEFAULT_PARTITIONS = 10;
+
+	/**
+	 * Default maximum number of users tracked at once.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENCY = 200;
+
+	private final Duration pollingInterval;
+	private final int partitions;
+	private final int maxConcurrency;
+
+	/**
+	 * Create the default settings.
+	 */
+	public TrackerSettings() {
+		this(DEFAULT_POLLING_INTERVAL, DEFAULT_PARTITIONS, DEFAULT_MAX_CONCURRENCY);
+	}
+
+	/**
+	 * Create the settings.
+	 *
+	 * @param pollingInterval
+	 *            Time between the start of two tracking cycles.
+	 * @param partitions
+	 *            Number of partitions a cycle is split into. Partition i starts
+	 *            i * pollingInterval / partitions after the start of the cycle.
+	 * @param maxConcurrency
+	 *            Maximum number of location requests in flight for a partition.
+	 */
+	public TrackerSettings(Duration pollingInterval, int partitions, int maxConcurrency) {
+		if (pollingInterval.isNegative() || pollingInterval.isZero() || partitions <= 0 || maxConcurrency <= 0) {
+			throw new IllegalArgumentException("Invalid tracker settings: pollingInterval=" + pollingInterval
+					+ ", partitions=" + partitions + ", maxConcurrency=" + maxConcurrency);
+		}
+		this.pollingInterval = pollingInterval;
+		this.partitions = partitions;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	public Duration getPollingInterval() {
+		return pollingInterval;
+	}
+
+	public int getPartitions() {
+		return partitions;
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+}
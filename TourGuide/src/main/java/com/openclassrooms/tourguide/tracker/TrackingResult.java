@@ -0,0 +1,57 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Outcome of tracking a batch of users: the new location of every user whose
+ * fix succeeded and the error of every user whose fix failed.
+ *
+ * @author Aitor
+ */
+public class TrackingResult {
+
+	private final Map<UUID, VisitedLocation> locations;
+	private final Map<UUID, Throwable> failures;
+
+	public TrackingResult(Map<UUID, VisitedLocation> locations, Map<UUID, Throwable> failures) {
+		this.locations = Collections.unmodifiableMap(locations);
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+
+	/**
+	 * @return New location of each tracked user, by user id.
+	 */
+	public Map<UUID, VisitedLocation> getLocations() {
+		return locations;
+	}
+
+	/**
+	 * @return Error of each user whose tracking failed, by user id.
+	 */
+	public Map<UUID, Throwable> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return Number of users whose location was tracked.
+	 */
+	public int getTrackedCount() {
+		return locations.size();
+	}
+
+	/**
+	 * @return Number of users whose tracking failed.
+	 */
+	public int getFailedCount() {
+		return failures.size();
+	}
+
+	@Override
+	public String toString() {
+		return getTrackedCount() + " users tracked, " + getFailedCount() + " failed";
+	}
+}
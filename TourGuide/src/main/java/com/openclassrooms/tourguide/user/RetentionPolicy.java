@@ -0,0 +1,93 @@
+package com.openclassrooms.tourguide.user;
+
+import java.time.Duration;
+
+/**
+ * How much location history a user keeps.
+ * <p>
+ * Only fixes already evaluated for rewards are ever dropped, and the newest
+ * fix is always kept. Ages are measured from the time of the newest fix. The
+ * rules are applied in order:
+ * <ol>
+ * <li>fixes older than {@code maxAge} are dropped;</li>
+ * <li>fixes older than {@code downsampleAfter} are downsampled to the first
+ * fix of every {@code downsampleInterval};</li>
+ * <li>the oldest fixes are dropped while more than {@code maxCount} remain.</li>
+ * </ol>
+ * A zero count or duration disables the corresponding rule.
+ * <p>
+ * The rules are a soft limit: a {@link VisitedLocationLog} applies them only
+ * when its arrays are full, then gives the arrays room for as many fixes again
+ * as it retained. Once every fix is evaluated, a history holds at most twice
+ * {@code maxCount} fixes (never less than the initial capacity of the log, 8),
+ * and a fix past {@code maxAge} may stay until the arrays are full again.
+ *
+ * @author Aitor
+ */
+public final class RetentionPolicy {
+
+	/**
+	 * Keep every fix.
+	 */
+	public static final RetentionPolicy UNBOUNDED = new RetentionPolicy(0, Duration.ZERO, Duration.ZERO,
+			Duration.ZERO);
+
+	private final int maxCount;
+	private final long maxAgeMillis;
+	private final long downsampleAfterMillis;
+	private final long downsampleIntervalMillis;
+
+	/**
+	 * Create a policy.
+	 *
+	 * @param maxCount
+	 *            Maximum number of fixes, 0 for no limit.
+	 * @param maxAge
+	 *            Age beyond which fixes are dropped, zero for no limit.
+	 * @param downsampleAfter
+	 *            Age beyond which fixes are downsampled.
+	 * @param downsampleInterval
+	 *            Interval between downsampled fixes, zero to disable
+	 *            downsampling.
+	 */
+	public RetentionPolicy(int maxCount, Duration maxAge, Duration downsampleAfter, Duration downsampleInterval) {
+		if (maxCount < 0 || maxAge.isNegative() || downsampleAfter.isNegative() || downsampleInterval.isNegative()) {
+			throw new IllegalArgumentException("Invalid retention policy: maxCount=" + maxCount + ", maxAge=" + maxAge
+					+ ", downsampleAfter=" + downsampleAfter + ", downsampleInterval=" + downsampleInterval);
+		}
+		this.maxCount = maxCount;
+		this.maxAgeMillis = maxAge.toMillis();
+		this.downsampleAfterMillis = downsampleAfter.toMillis();
+		this.downsampleIntervalMillis = downsampleInterval.toMillis();
+	}
+
+	/**
+	 * @return true if no rule is enabled.
+	 */
+	public boolean isUnbounded() {
+		return maxCount == 0 && maxAgeMillis == 0 && downsampleIntervalMillis == 0;
+	}
+
+	public int getMaxCount() {
+		return maxCount;
+	}
+
+	public long getMaxAgeMillis() {
+		return maxAgeMillis;
+	}
+
+	public long getDownsampleAfterMillis() {
+		return downsampleAfterMillis;
+	}
+
+	public long getDownsampleIntervalMillis() {
+		return downsampleIntervalMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "RetentionPolicy[maxCount=" + maxCount + ", maxAge=" + Duration.ofMillis(maxAgeMillis)
+				+ ", downsampleAfter=" + Duration.ofMillis(downsampleAfterMillis) + ", downsampleInterval="
+				+ Duration.ofMillis(downsampleIntervalMillis) + "]";
+	}
+}
@@ -0,0 +1,280 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+import com.openclassrooms.tourguide.attraction.AttractionIds;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Rewards of a user, at most one per attraction name.
+ * <p>
+ * The attractions are interned into {@link AttractionIds}, and the store keeps
+ * a bitset of the rewarded ids: checking whether an attraction was already
+ * rewarded is a single bit test, without hashing its name. The rewards
+ * themselves are stored column by column in primitive arrays (id, points,
+ * latitude, longitude and epoch milliseconds of the rewarded fix) next to a
+ * reference to the shared attraction: about 36 bytes per reward instead of
+ * about 150 for a {@link UserReward} with its {@link VisitedLocation}, its
+ * {@link Location}, its {@link Date} and its node in a hash map.
+ * <p>
+ * Writers serialize on the store, rewards being granted rarely; readers are
+ * wait-free. Every mutation publishes a new immutable state, sharing the
+ * columns of the previous one since it only writes beyond its size, so a
+ * reader always sees a consistent bitset and columns.
+ * {@link #asMap()} serves the rewards as a {@code Map} keyed by attraction
+ * name which materializes a new {@link UserReward} on every read: changing
+ * its points does not change the stored reward.
+ *
+ * @author Aitor
+ */
+public class RewardStore {
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private final UUID userId;
+	private final Map<String, UserReward> view = new RewardMap();
+
+	/**
+	 * Latest published state, replaced on every mutation.
+	 */
+	private volatile State state = State.EMPTY;
+
+	/**
+	 * Create an empty store.
+	 *
+	 * @param userId
+	 *            Id of the owner of the rewards, in their visited locations.
+	 */
+	public RewardStore(UUID userId) {
+		this.userId = userId;
+	}
+
+	/**
+	 * Add a reward, unless its attraction was already rewarded.
+	 *
+	 * @param userReward
+	 *            Reward to add.
+	 * @return false if a reward for an attraction of the same name is stored.
+	 */
+	public boolean add(UserReward userReward) {
+		int attractionId = AttractionIds.intern(userReward.attraction.attractionName);
+		VisitedLocation visitedLocation = userReward.visitedLocation;
+		long timeMillis = visitedLocation.timeVisited == null ? VisitedLocationLog.NO_TIME
+				: visitedLocation.timeVisited.getTime();
+		synchronized (this) {
+			State current = state;
+			if (current.contains(attractionId)) {
+				return false;
+			}
+			state = current.with(attractionId, userReward.attraction, userReward.getRewardPoints(),
+					visitedLocation.location.latitude, visitedLocation.location.longitude, timeMillis);
+		}
+		return true;
+	}
+
+	/**
+	 * Check if an attraction was rewarded.
+	 *
+	 * @param attractionId
+	 *            Id of the attraction in {@link AttractionIds}.
+	 * @return true if a reward is stored for the attraction.
+	 */
+	public boolean contains(int attractionId) {
+		return state.contains(attractionId);
+	}
+
+	/**
+	 * Check if an attraction was rewarded.
+	 *
+	 * @param attractionName
+	 *            Name of the attraction.
+	 * @return true if a reward is stored for the attraction.
+	 */
+	public boolean contains(String attractionName) {
+		return state.contains(AttractionIds.find(attractionName));
+	}
+
+	/**
+	 * Get the number of rewards.
+	 *
+	 * @return Number of rewarded attractions.
+	 */
+	public int size() {
+		return state.size;
+	}
+
+	/**
+	 * Get the sum of the points of the rewards.
+	 *
+	 * @return Points, as granted.
+	 */
+	public int getTotalPoints() {
+		return state.totalPoints;
+	}
+
+	/**
+	 * Get a live, unmodifiable view of the rewards.
+	 *
+	 * @return Rewards keyed by attraction name.
+	 */
+	public Map<String, UserReward> asMap() {
+		return view;
+	}
+
+	private UserReward materialize(State state, int slot) {
+		long timeMillis = state.times[slot];
+		VisitedLocation visitedLocation = new VisitedLocation(userId,
+				new Location(state.latitudes[slot], state.longitudes[slot]),
+				timeMillis == VisitedLocationLog.NO_TIME ? null : new Date(timeMillis));
+		return new UserReward(visitedLocation, state.attractions[slot], state.points[slot]);
+	}
+
+	/**
+	 * Immutable state of the store. The columns are shared with the next
+	 * states, which only write beyond this size; the bitset is never written.
+	 */
+	private static final class State {
+		static final State EMPTY = new State(new long[0], new int[0], new Attraction[0], new int[0], new double[0],
+				new double[0], new long[0], 0, 0);
+
+		final long[] rewarded;
+		final int[] ids;
+		final Attraction[] attractions;
+		final int[] points;
+		final double[] latitudes;
+		final double[] longitudes;
+		final long[] times;
+		final int size;
+		final int totalPoints;
+
+		State(long[] rewarded, int[] ids, Attraction[] attractions, int[] points, double[] latitudes,
+				double[] longitudes, long[] times, int size, int totalPoints) {
+			this.rewarded = rewarded;
+			this.ids = ids;
+			this.attractions = attractions;
+			this.points = points;
+			this.latitudes = latitudes;
+			this.longitudes = longitudes;
+			this.times = times;
+			this.size = size;
+			this.totalPoints = totalPoints;
+		}
+
+		boolean contains(int attractionId) {
+			int word = attractionId >>> 6;
+			return attractionId >= 0 && word < rewarded.length && (rewarded[word] & (1L << attractionId)) != 0;
+		}
+
+		int slotOf(int attractionId) {
+			for (int i = 0; i < size; i++) {
+				if (ids[i] == attractionId) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		State with(int attractionId, Attraction attraction, int rewardPoints, double latitude, double longitude,
+				long timeMillis) {
+			int[] ids = this.ids;
+			Attraction[] attractions = this.attractions;
+			int[] points = this.points;
+			double[] latitudes = this.latitudes;
+			double[] longitudes = this.longitudes;
+			long[] times = this.times;
+			if (size == ids.length) {
+				int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+				ids = Arrays.copyOf(ids, capacity);
+				attractions = Arrays.copyOf(attractions, capacity);
+				points = Arrays.copyOf(points, capacity);
+				latitudes = Arrays.copyOf(latitudes, capacity);
+				longitudes = Arrays.copyOf(longitudes, capacity);
+				times = Arrays.copyOf(times, capacity);
+			}
+			// the slot is beyond the size of every published state sharing these arrays
+			ids[size] = attractionId;
+			attractions[size] = attraction;
+			points[size] = rewardPoints;
+			latitudes[size] = latitude;
+			longitudes[size] = longitude;
+			times[size] = timeMillis;
+			long[] bits = Arrays.copyOf(rewarded, Math.max(rewarded.length, (attractionId >>> 6) + 1));
+			bits[attractionId >>> 6] |= 1L << attractionId;
+			return new State(bits, ids, attractions, points, latitudes, longitudes, times, size + 1,
+					totalPoints + rewardPoints);
+		}
+	}
+
+	/**
+	 * Rewards keyed by attraction name, read from the latest state on every
+	 * call.
+	 */
+	private final class RewardMap extends AbstractMap<String, UserReward> {
+
+		@Override
+		public int size() {
+			return state.size;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof String name && contains(name);
+		}
+
+		@Override
+		public UserReward get(Object key) {
+			if (!(key instanceof String name)) {
+				return null;
+			}
+			State current = state;
+			int attractionId = AttractionIds.find(name);
+			if (!current.contains(attractionId)) {
+				return null;
+			}
+			return materialize(current, current.slotOf(attractionId));
+		}
+
+		@Override
+		public Set<Entry<String, UserReward>> entrySet() {
+			return new AbstractSet<>() {
+				@Override
+				public int size() {
+					return state.size;
+				}
+
+				@Override
+				public Iterator<Entry<String, UserReward>> iterator() {
+					State current = state;
+					return new Iterator<>() {
+						private int next;
+
+						@Override
+						public boolean hasNext() {
+							return next < current.size;
+						}
+
+						@Override
+						public Entry<String, UserReward> next() {
+							if (next >= current.size) {
+								throw new NoSuchElementException();
+							}
+							UserReward userReward = materialize(current, next++);
+							return new SimpleImmutableEntry<>(userReward.attraction.attractionName, userReward);
+						}
+					};
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * In-memory {@link UserRegistry} splitting the users into a power of two
+ * number of shards by user name.
+ * <p>
+ * A partition {@code i} of {@code n} is made of whole shards when {@code n}
+ * divides the shard count, so iterating it touches only its own shards;
+ * otherwise every shard is scanned and filtered by hash.
+ * <p>
+ * The registry applies its {@link RetentionPolicy} to the location history of
+ * every user added and makes the user report its changes to the
+ * {@link UserJournal} of the registry. Both are set, and the addition
+ * journaled, before the user can be found by id, by name or in a partition.
+ * A user is added only if both its name and its id are free.
+ *
+ * @author Aitor
+ */
+public class ShardedUserRegistry implements UserRegistry {
+
+	/**
+	 * Default number of shards.
+	 */
+	public static final int DEFAULT_SHARD_COUNT = 64;
+
+	private final ConcurrentHashMap<String, User>[] shards;
+	private final ConcurrentHashMap<UUID, User> usersById = new ConcurrentHashMap<>();
+	private final int mask;
+	private final RetentionPolicy retentionPolicy;
+	private final UserJournal journal;
+
+	/**
+	 * Create a registry with the default number of shards.
+	 */
+	public ShardedUserRegistry() {
+		this(DEFAULT_SHARD_COUNT);
+	}
+
+	/**
+	 * Create a registry keeping the whole location history of the users.
+	 *
+	 * @param shardCount
+	 *            Number of shards, rounded up to a power of two.
+	 */
+	public ShardedUserRegistry(int shardCount) {
+		this(shardCount, RetentionPolicy.UNBOUNDED);
+	}
+
+	/**
+	 * Create a registry.
+	 *
+	 * @param shardCount
+	 *            Number of shards, rounded up to a power of two.
+	 * @param retentionPolicy
+	 *            Retention policy of the location history of the users.
+	 */
+	public ShardedUserRegistry(int shardCount, RetentionPolicy retentionPolicy) {
+		this(shardCount, retentionPolicy, UserJournal.NONE);
+	}
+
+	/**
+	 * Create a registry persisting its users.
+	 *
+	 * @param shardCount
+	 *            Number of shards, rounded up to a power of two.
+	 * @param retentionPolicy
+	 *            Retention policy of the location history of the users.
+	 * @param journal
+	 *            Journal of the changes made to the users.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ShardedUserRegistry(int shardCount, RetentionPolicy retentionPolicy, UserJournal journal) {
+		if (shardCount <= 0) {
+			throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+		}
+		int size = Integer.highestOneBit(shardCount);
+		if (size < shardCount) {
+			size <<= 1;
+		}
+		this.shards = new ConcurrentHashMap[size];
+		for (int i = 0; i < size; i++) {
+			shards[i] = new ConcurrentHashMap<>();
+		}
+		this.mask = size - 1;
+		this.retentionPolicy = retentionPolicy;
+		this.journal = journal;
+	}
+
+	@Override
+	public boolean add(User user) {
+		String userName = user.getUserName();
+		User added = shardOf(userName).computeIfAbsent(userName, name -> {
+			if (usersById.containsKey(user.getUserId())) {
+				return null;
+			}
+			// bounded and journaled before any lookup can append a fix to it; the name lookups and
+			// the partition walks only see the entry once this function returns
+			user.setRetentionPolicy(retentionPolicy);
+			user.setJournal(journal);
+			journal.userAdded(user);
+			return usersById.putIfAbsent(user.getUserId(), user) == null ? user : null;
+		});
+		return added == user;
+	}
+
+	@Override
+	public User get(String userName) {
+		return shardOf(userName).get(userName);
+	}
+
+	@Override
+	public User get(UUID userId) {
+		return usersById.get(userId);
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (ConcurrentHashMap<String, User> shard : shards) {
+			size += shard.size();
+		}
+		return size;
+	}
+
+	@Override
+	public Stream<User> stream() {
+		return Arrays.stream(shards).flatMap(shard -> shard.values().stream());
+	}
+
+	@Override
+	public Stream<User> partition(int index, int count) {
+		if (count <= 0 || index < 0 || index >= count) {
+			throw new IllegalArgumentException("Invalid partition " + index + " of " + count);
+		}
+		if (shards.length % count == 0) {
+			// hash & mask is congruent to hash modulo count: whole shards belong to the partition
+			return IntStream.range(0, shards.length).filter(i -> i % count == index)
+					.mapToObj(i -> shards[i]).flatMap(shard -> shard.values().stream());
+		}
+		return stream().filter(user -> Math.floorMod(hash(user.getUserName()), count) == index);
+	}
+
+	/**
+	 * Get the number of shards.
+	 *
+	 * @return Number of shards.
+	 */
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	private ConcurrentHashMap<String, User> shardOf(String userName) {
+		return shards[hash(userName) & mask];
+	}
+
+	private static int hash(String userName) {
+		int h = userName.hashCode();
+		// spread the high bits like HashMap does, the low ones pick the shard
+		return h ^ (h >>> 16);
+	}
+}
@@ -2,29 +2,41 @@ package com.openclassrooms.tourguide.user;
 
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
 
+import com.openclassrooms.tourguide.attraction.NearbyAttractions;
+import com.openclassrooms.tourguide.attraction.ProximityEngine;
+
 public class User {
 	private final UUID userId;
 	private final String userName;
-	private String phoneNumber;
-	private String emailAddress;
-	private Date latestLocationTimestamp;
-	private List<VisitedLocation> visitedLocations = new ArrayList<>();
-	private Map<String,UserReward> userRewards = new HashMap<>();
-	private UserPreferences userPreferences = new UserPreferences();
-	private List<Provider> tripDeals = new ArrayList<>();
+	private volatile String phoneNumber;
+	private volatile String emailAddress;
+	private volatile Date latestLocationTimestamp;
+	// appended by the tracker while the reward calculation iterates snapshots of it
+	private final VisitedLocationLog visitedLocations;
+	// one reward per attraction, checked with a bit test and stored in primitive columns
+	private final RewardStore userRewards;
+	private volatile UserPreferences userPreferences = new UserPreferences();
+	private volatile List<Provider> tripDeals = new ArrayList<>();
+	// attractions nearest to a recent fix, replaced as new fixes are recorded
+	private final AtomicReference<NearbyAttractions> nearbyAttractions = new AtomicReference<>();
+	// area around the last fix evaluated for rewards in which new fixes cannot earn any
+	private volatile ProximityEngine.Region proximityRegion;
+	private volatile UserJournal journal = UserJournal.NONE;
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
 		this.userId = userId;
 		this.userName = userName;
 		this.phoneNumber = phoneNumber;
 		this.emailAddress = emailAddress;
+		this.visitedLocations = new VisitedLocationLog(userId);
+		this.userRewards = new RewardStore(userId);
 	}
 	
 	public UUID getUserId() {
@@ -60,26 +72,83 @@ public class User {
 	}
 	
 	public void addToVisitedLocations(VisitedLocation visitedLocation) {
-		visitedLocations.add(visitedLocation);
+		long sequence = visitedLocations.append(visitedLocation);
+		journal.locationAdded(this, sequence, visitedLocation);
 	}
 	
+	// immutable snapshot, safe to iterate while new locations are added; the
+	// entries are materialized from primitive columns on every get
 	public List<VisitedLocation> getVisitedLocations() {
-		return visitedLocations;
+		return visitedLocations.snapshot();
+	}
+	
+	// same snapshot, with direct access to the coordinates and times of the fixes
+	public VisitedLocationLog.Snapshot getLocationHistory() {
+		return visitedLocations.snapshot();
+	}
+	
+	// replaces the history, for instance with a persisted one; not journaled
+	public void restoreLocationHistory(double[] latitudes, double[] longitudes, long[] times, int size,
+			long endSequence, long rewardedLocationCount) {
+		visitedLocations.restore(latitudes, longitudes, times, size, endSequence, rewardedLocationCount);
+		nearbyAttractions.set(null);
+		proximityRegion = null;
 	}
 	
 	public void clearVisitedLocations() {
-		visitedLocations.clear();
+		// the sequence numbers of the fixes go on from the cleared history
+		long sequence = visitedLocations.clear();
+		nearbyAttractions.set(null);
+		proximityRegion = null;
+		journal.locationsCleared(this, sequence);
+	}
+	
+	// number of visited locations, counted since the history was created, already
+	// evaluated for rewards; evicted and cleared locations are counted too
+	public long getRewardedLocationCount() {
+		return visitedLocations.getEvaluatedSequence();
 	}
 	
-	public void addUserReward(UserReward userReward) {
-		String visitedLocationName=userReward.attraction.attractionName;
-		if(!userRewards.containsKey(visitedLocationName)) {
-			userRewards.put(visitedLocationName, userReward);
+	public void advanceRewardedLocationCount(long rewardedLocationCount) {
+		visitedLocations.advanceEvaluatedSequence(rewardedLocationCount);
+	}
+	
+	// evaluated locations beyond the policy are evicted as new ones are added
+	public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+		visitedLocations.setRetentionPolicy(retentionPolicy);
+	}
+	
+	// changes are reported to the journal once visible
+	public void setJournal(UserJournal journal) {
+		this.journal = journal;
+	}
+	
+	// returns false if the user was already rewarded for this attraction
+	public boolean addUserReward(UserReward userReward) {
+		if (!userRewards.add(userReward)) {
+			return false;
 		}
+		journal.rewardAdded(this, userReward);
+		return true;
 	}
 	
+	public boolean hasUserReward(String attractionName) {
+		return userRewards.contains(attractionName);
+	}
+	
+	// id of the attraction in AttractionIds, the check of the reward loop
+	public boolean hasUserReward(int attractionId) {
+		return userRewards.contains(attractionId);
+	}
+	
+	// live view materializing the rewards from the store on every read
 	public Map<String,UserReward> getUserRewards() {
-		return userRewards;
+		return userRewards.asMap();
+	}
+	
+	// maintained as rewards are added, instead of summing them on every call
+	public int getCumulativeRewardPoints() {
+		return userRewards.getTotalPoints();
 	}
 	
 	public UserPreferences getUserPreferences() {
@@ -91,7 +160,8 @@ public class User {
 	}
 
 	public VisitedLocation getLastVisitedLocation() {
-		return visitedLocations.get(visitedLocations.size() - 1);
+		VisitedLocationLog.Snapshot snapshot = visitedLocations.snapshot();
+		return snapshot.get(snapshot.size() - 1);
 	}
 	
 	public void setTripDeals(List<Provider> tripDeals) {
@@ -101,5 +171,24 @@ public class User {
 	public List<Provider> getTripDeals() {
 		return tripDeals;
 	}
+	
+	public ProximityEngine.Region getProximityRegion() {
+		return proximityRegion;
+	}
+	
+	public void setProximityRegion(ProximityEngine.Region proximityRegion) {
+		this.proximityRegion = proximityRegion;
+	}
+	
+	public NearbyAttractions getNearbyAttractions() {
+		return nearbyAttractions.get();
+	}
+	
+	// a snapshot of an older fix than the current one is ignored, so that concurrent refreshes
+	// cannot go back in time; one of the same fix replaces it, for a new attraction index
+	public NearbyAttractions setNearbyAttractions(NearbyAttractions snapshot) {
+		return nearbyAttractions.accumulateAndGet(snapshot,
+				(current, next) -> current == null || next.getSequence() >= current.getSequence() ? next : current);
+	}
 
 }
@@ -0,0 +1,80 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.List;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Receiver of the changes made to the users, to persist them.
+ * <p>
+ * A user reports its changes to the journal set by the registry it was added
+ * to; the methods are called on the thread making the change, right after it
+ * is visible in memory, and must not block for long.
+ *
+ * @author Aitor
+ */
+public interface UserJournal {
+
+	/**
+	 * Journal ignoring every change.
+	 */
+	UserJournal NONE = new UserJournal() {
+	};
+
+	/**
+	 * A user was added to the registry.
+	 *
+	 * @param user
+	 *            New user.
+	 */
+	default void userAdded(User user) {
+	}
+
+	/**
+	 * A location was appended to the history of a user.
+	 *
+	 * @param user
+	 *            User who visited the location.
+	 * @param sequence
+	 *            Sequence number of the location in the history.
+	 * @param visitedLocation
+	 *            Visited location.
+	 */
+	default void locationAdded(User user, long sequence, VisitedLocation visitedLocation) {
+	}
+
+	/**
+	 * The history of a user was cleared.
+	 *
+	 * @param user
+	 *            User whose history was cleared.
+	 * @param sequence
+	 *            Sequence number of the next location of the history, every
+	 *            location below it being removed.
+	 */
+	default void locationsCleared(User user, long sequence) {
+	}
+
+	/**
+	 * A reward was granted to a user.
+	 *
+	 * @param user
+	 *            Rewarded user.
+	 * @param userReward
+	 *            New reward.
+	 */
+	default void rewardAdded(User user, UserReward userReward) {
+	}
+
+	/**
+	 * Add the persisted users to a registry, before any change is journaled.
+	 *
+	 * @param registry
+	 *            Registry to fill.
+	 * @param attractions
+	 *            Current attractions, matched by name with the rewarded ones.
+	 */
+	default void restore(UserRegistry registry, List<Attraction> attractions) {
+	}
+}
@@ -0,0 +1,88 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Storage of the users known by the tour guide.
+ * <p>
+ * Implementations must be safe to use from the request threads and the
+ * tracker at the same time. Iteration is weakly consistent: it never fails
+ * because of a concurrent {@link #add(User)} and may or may not see the users
+ * added while it runs.
+ *
+ * @author Aitor
+ */
+public interface UserRegistry {
+
+	/**
+	 * Add a user unless a user with the same name or id already exists.
+	 *
+	 * @param user
+	 *            User to add.
+	 * @return true if the user was added.
+	 */
+	boolean add(User user);
+
+	/**
+	 * Add users in bulk, skipping the names that already exist.
+	 *
+	 * @param users
+	 *            Users to add.
+	 * @return Number of users added.
+	 */
+	default int addAll(Collection<User> users) {
+		int added = 0;
+		for (User user : users) {
+			if (add(user)) {
+				added++;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Get a user by name.
+	 *
+	 * @param userName
+	 *            Name of the user.
+	 * @return The user, or null if there is none with this name.
+	 */
+	User get(String userName);
+
+	/**
+	 * Get a user by id.
+	 *
+	 * @param userId
+	 *            Id of the user.
+	 * @return The user, or null if there is none with this id.
+	 */
+	User get(UUID userId);
+
+	/**
+	 * Get the number of users.
+	 *
+	 * @return Number of users.
+	 */
+	int size();
+
+	/**
+	 * Stream over every user without copying them.
+	 *
+	 * @return Weakly consistent stream of the users.
+	 */
+	Stream<User> stream();
+
+	/**
+	 * Stream over one partition of the users. The partitions
+	 * {@code 0 .. count - 1} are disjoint and together contain every user.
+	 *
+	 * @param index
+	 *            Index of the partition, from 0 to count - 1.
+	 * @param count
+	 *            Number of partitions.
+	 * @return Weakly consistent stream of the users of the partition.
+	 */
+	Stream<User> partition(int index, int count);
+}
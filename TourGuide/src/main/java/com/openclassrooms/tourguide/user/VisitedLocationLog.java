@@ -0,0 +1,453 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Append-only log of the locations visited by a user.
+ * <p>
+ * Writers are serialized by a ticket spin lock rather than a monitor: each
+ * mutation claims a ticket with an atomic increment, spins (then yields) until
+ * the preceding tickets are published, and is applied in ticket order. This is
+ * not lock-free, a writer descheduled in its turn holds back the next ones of
+ * the same log, but a single writer (the usual case, one GPS fix at a time per
+ * user) never waits and never inflates a monitor. Readers are wait-free: they
+ * get an immutable snapshot of the entries published so far and can iterate
+ * it while new fixes are appended.
+ * <p>
+ * The fixes are stored column by column in primitive arrays (latitude,
+ * longitude and epoch milliseconds): 24 bytes per fix, about 32 with the spare
+ * capacity of the arrays, instead of about 85 for a {@link VisitedLocation}
+ * with its {@link Location}, its {@link Date} and its slot in a list, and
+ * without any object per fix for the garbage collector to trace.
+ * Snapshots expose the columns directly and, as a {@code List}, materialize a
+ * new {@link VisitedLocation} for the owner of the log on every
+ * {@link Snapshot#get(int)}.
+ * <p>
+ * Every fix gets a sequence number, its rank among all the fixes appended
+ * since the log was created; clearing the log keeps the numbering going, so a
+ * sequence number is never given to two fixes of the same log. The log also
+ * holds the rewards watermark: the sequence number up to which fixes have been
+ * evaluated for rewards. When the arrays are full, the writer applies the
+ * {@link RetentionPolicy} to the evaluated fixes before growing them. It does
+ * so inside its turn of the ticket lock, so the other writers of the log wait
+ * for the copy of the retained fixes; it happens once per filling of the
+ * arrays, O(1) amortized per append, and readers keep the previous snapshot
+ * meanwhile. The compacted arrays have room for as many fixes again as they
+ * retain, so the policy is a soft limit: a log whose fixes are all evaluated
+ * holds at most twice {@code maxCount} fixes (at least
+ * {@value #INITIAL_CAPACITY}), and fixes past {@code maxAge} stay until the
+ * arrays are full again. Fixes at or above the watermark are never evicted, so they always
+ * form the tail of a snapshot and {@link Snapshot#indexOf(long)} finds them by
+ * sequence number.
+ *
+ * @author Aitor
+ */
+public class VisitedLocationLog {
+
+	private static final int INITIAL_CAPACITY = 8;
+	private static final int SPINS_BEFORE_YIELD = 64;
+
+	/**
+	 * Time stored for a fix without a visit time.
+	 */
+	public static final long NO_TIME = Long.MIN_VALUE;
+
+	private final UUID userId;
+
+	/**
+	 * Sequence number up to which fixes were evaluated for rewards.
+	 */
+	private final AtomicLong evaluated = new AtomicLong();
+
+	private volatile RetentionPolicy retentionPolicy = RetentionPolicy.UNBOUNDED;
+
+	/**
+	 * Next ticket to hand out to a writer.
+	 */
+	private final AtomicLong claimed = new AtomicLong();
+
+	/**
+	 * Number of writer tickets whose mutation has been published.
+	 */
+	private volatile long published;
+
+	/**
+	 * Latest published state, replaced on every mutation.
+	 */
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Create an empty log.
+	 *
+	 * @param userId
+	 *            Id of the user, given to the materialized visited locations.
+	 */
+	public VisitedLocationLog(UUID userId) {
+		this.userId = userId;
+		this.snapshot = Snapshot.empty(userId);
+	}
+
+	/**
+	 * Append a visited location at the end of the log.
+	 *
+	 * @param visitedLocation
+	 *            Location to append.
+	 * @return Sequence number of the location.
+	 */
+	public long append(VisitedLocation visitedLocation) {
+		return append(visitedLocation.location.latitude, visitedLocation.location.longitude,
+				visitedLocation.timeVisited == null ? NO_TIME : visitedLocation.timeVisited.getTime());
+	}
+
+	/**
+	 * Append a fix at the end of the log.
+	 *
+	 * @param latitude
+	 *            Latitude of the fix.
+	 * @param longitude
+	 *            Longitude of the fix.
+	 * @param timeMillis
+	 *            Time of the fix, in milliseconds since the epoch.
+	 * @return Sequence number of the fix.
+	 */
+	public long append(double latitude, double longitude, long timeMillis) {
+		long ticket = awaitTurn();
+		try {
+			Snapshot current = snapshot;
+			if (current.size == current.latitudes.length) {
+				current = compactOrGrow(current, timeMillis == NO_TIME && current.size > 0
+						? current.times[current.size - 1] : timeMillis);
+			}
+			int size = current.size;
+			// the slot is beyond the size of every published snapshot sharing these arrays
+			current.latitudes[size] = latitude;
+			current.longitudes[size] = longitude;
+			current.times[size] = timeMillis;
+			snapshot = new Snapshot(userId, current.latitudes, current.longitudes, current.times, size + 1,
+					current.endSequence + 1, current.tailSequence);
+			return current.endSequence;
+		} finally {
+			published = ticket + 1;
+		}
+	}
+
+	/**
+	 * Replace the content of the log, typically with a persisted history.
+	 *
+	 * @param latitudes
+	 *            Latitudes of the fixes, oldest first.
+	 * @param longitudes
+	 *            Longitudes of the fixes.
+	 * @param times
+	 *            Times of the fixes, {@link #NO_TIME} for none.
+	 * @param size
+	 *            Number of fixes.
+	 * @param endSequence
+	 *            Sequence number of the next fix to append.
+	 * @param evaluatedSequence
+	 *            Rewards watermark.
+	 */
+	public void restore(double[] latitudes, double[] longitudes, long[] times, int size, long endSequence,
+			long evaluatedSequence) {
+		if (size < 0 || size > endSequence || evaluatedSequence > endSequence) {
+			throw new IllegalArgumentException("Invalid history: size=" + size + ", endSequence=" + endSequence
+					+ ", evaluatedSequence=" + evaluatedSequence);
+		}
+		int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+		long ticket = awaitTurn();
+		try {
+			// the fixes at or above the watermark were never compacted
+			snapshot = new Snapshot(userId, Arrays.copyOf(latitudes, capacity), Arrays.copyOf(longitudes, capacity),
+					Arrays.copyOf(times, capacity), size, endSequence, Math.max(evaluatedSequence, endSequence - size));
+			evaluated.set(evaluatedSequence);
+		} finally {
+			published = ticket + 1;
+		}
+	}
+
+	/**
+	 * Remove every entry of the log.
+	 *
+	 * @return Sequence number of the next fix to append, every fix below it
+	 *         being removed.
+	 */
+	public long clear() {
+		long ticket = awaitTurn();
+		try {
+			long endSequence = snapshot.endSequence;
+			// the watermark stays below the next fix, which no evaluation in progress can skip
+			snapshot = new Snapshot(userId, new double[0], new double[0], new long[0], 0, endSequence, endSequence);
+			return endSequence;
+		} finally {
+			published = ticket + 1;
+		}
+	}
+
+	/**
+	 * Get the rewards watermark.
+	 *
+	 * @return Number of fixes, counted since the log was created, already
+	 *         evaluated for rewards.
+	 */
+	public long getEvaluatedSequence() {
+		return evaluated.get();
+	}
+
+	/**
+	 * Move the rewards watermark forward; it never moves back.
+	 *
+	 * @param sequence
+	 *            Sequence number up to which fixes were evaluated.
+	 */
+	public void advanceEvaluatedSequence(long sequence) {
+		evaluated.accumulateAndGet(sequence, Math::max);
+	}
+
+	public RetentionPolicy getRetentionPolicy() {
+		return retentionPolicy;
+	}
+
+	/**
+	 * Set the retention policy, applied the next time the arrays are full.
+	 * Up to that point the log may exceed it, by as many fixes as it retained
+	 * at its last compaction.
+	 *
+	 * @param retentionPolicy
+	 *            Policy to apply.
+	 */
+	public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+		this.retentionPolicy = retentionPolicy;
+	}
+
+	/**
+	 * Get an immutable view of the entries published so far.
+	 *
+	 * @return Snapshot of the log.
+	 */
+	public Snapshot snapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Get the number of entries.
+	 *
+	 * @return Size of the log.
+	 */
+	public int size() {
+		return snapshot.size;
+	}
+
+	/**
+	 * Copy the retained fixes of a full snapshot into arrays with room for as
+	 * many again. Called by the writer holding the current ticket, which the
+	 * next writers wait for.
+	 *
+	 * @param current
+	 *            Full snapshot.
+	 * @param now
+	 *            Time from which ages are measured.
+	 * @return Unpublished snapshot of the retained fixes.
+	 */
+	private Snapshot compactOrGrow(Snapshot current, long now) {
+		int size = current.size;
+		RetentionPolicy policy = retentionPolicy;
+		long tailSequence = current.tailSequence;
+		boolean[] dropped = null;
+		int retained = size;
+		if (!policy.isUnbounded() && size > 0) {
+			tailSequence = Math.min(Math.max(evaluated.get(), current.tailSequence), current.endSequence);
+			// evaluated fixes, except the newest one
+			int evictable = Math.min(current.indexOf(tailSequence), size - 1);
+			dropped = new boolean[evictable];
+			retained -= select(current.times, evictable, dropped, policy, now);
+			if (policy.getMaxCount() > 0) {
+				for (int i = 0; i < evictable && retained > policy.getMaxCount(); i++) {
+					if (!dropped[i]) {
+						dropped[i] = true;
+						retained--;
+					}
+				}
+			}
+		}
+		int capacity = Math.max(INITIAL_CAPACITY, retained * 2);
+		if (retained == size) {
+			return new Snapshot(userId, Arrays.copyOf(current.latitudes, capacity),
+					Arrays.copyOf(current.longitudes, capacity), Arrays.copyOf(current.times, capacity), size,
+					current.endSequence, tailSequence);
+		}
+		double[] latitudes = new double[capacity];
+		double[] longitudes = new double[capacity];
+		long[] times = new long[capacity];
+		int next = 0;
+		for (int i = 0; i < size; i++) {
+			if (i < dropped.length && dropped[i]) {
+				continue;
+			}
+			latitudes[next] = current.latitudes[i];
+			longitudes[next] = current.longitudes[i];
+			times[next] = current.times[i];
+			next++;
+		}
+		return new Snapshot(userId, latitudes, longitudes, times, next, current.endSequence, tailSequence);
+	}
+
+	/**
+	 * Mark the fixes dropped by the age and downsampling rules.
+	 *
+	 * @return Number of fixes marked.
+	 */
+	private static int select(long[] times, int evictable, boolean[] dropped, RetentionPolicy policy, long now) {
+		int count = 0;
+		long lastBucket = Long.MIN_VALUE;
+		for (int i = 0; i < evictable; i++) {
+			long time = times[i];
+			if (time == NO_TIME) {
+				continue;
+			}
+			long age = now - time;
+			if (policy.getMaxAgeMillis() > 0 && age > policy.getMaxAgeMillis()) {
+				dropped[i] = true;
+			} else if (policy.getDownsampleIntervalMillis() > 0 && age > policy.getDownsampleAfterMillis()) {
+				long bucket = Math.floorDiv(time, policy.getDownsampleIntervalMillis());
+				dropped[i] = bucket == lastBucket;
+				lastBucket = bucket;
+			}
+			if (dropped[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// the ticket spin lock: mutations run one at a time per log, in the order they claimed their ticket
+	private long awaitTurn() {
+		long ticket = claimed.getAndIncrement();
+		int spins = 0;
+		while (published != ticket) {
+			// a preceding writer is publishing: spin briefly, then give it the CPU
+			if (++spins < SPINS_BEFORE_YIELD) {
+				Thread.onSpinWait();
+			} else {
+				Thread.yield();
+			}
+		}
+		return ticket;
+	}
+
+	/**
+	 * Immutable prefix of the columns of the log.
+	 */
+	public static final class Snapshot extends AbstractList<VisitedLocation> implements RandomAccess {
+		private final UUID userId;
+		private final double[] latitudes;
+		private final double[] longitudes;
+		private final long[] times;
+		private final int size;
+		// sequence number of the next fix to append
+		private final long endSequence;
+		// the fixes from this sequence number on were never compacted: they are the tail of the arrays
+		private final long tailSequence;
+
+		Snapshot(UUID userId, double[] latitudes, double[] longitudes, long[] times, int size, long endSequence,
+				long tailSequence) {
+			this.userId = userId;
+			this.latitudes = latitudes;
+			this.longitudes = longitudes;
+			this.times = times;
+			this.size = size;
+			this.endSequence = endSequence;
+			this.tailSequence = tailSequence;
+		}
+
+		static Snapshot empty(UUID userId) {
+			return new Snapshot(userId, new double[0], new double[0], new long[0], 0, 0, 0);
+		}
+
+		/**
+		 * Get the sequence number the next appended fix will get.
+		 *
+		 * @return Number of fixes appended since the log was created.
+		 */
+		public long getEndSequence() {
+			return endSequence;
+		}
+
+		/**
+		 * Get the index of the first fix whose sequence number is not lower than
+		 * the given one. Below the watermark of the last compaction, the index of
+		 * the first fix at that watermark is returned: the fixes before it were
+		 * all evaluated already and some of them may have been evicted.
+		 *
+		 * @param sequence
+		 *            Sequence number, typically the rewards watermark.
+		 * @return Index between 0 and the size of the snapshot.
+		 */
+		public int indexOf(long sequence) {
+			long from = Math.max(sequence, tailSequence);
+			if (from >= endSequence) {
+				return size;
+			}
+			return (int) (size - (endSequence - from));
+		}
+
+		/**
+		 * Materialize an entry.
+		 *
+		 * @param index
+		 *            Index of the entry, 0 being the oldest.
+		 * @return New visited location for the entry.
+		 */
+		@Override
+		public VisitedLocation get(int index) {
+			checkIndex(index);
+			return new VisitedLocation(userId, new Location(latitudes[index], longitudes[index]),
+					times[index] == NO_TIME ? null : new Date(times[index]));
+		}
+
+		/**
+		 * Get the location of an entry, without its user and time.
+		 *
+		 * @param index
+		 *            Index of the entry, 0 being the oldest.
+		 * @return New location for the entry.
+		 */
+		public Location getLocation(int index) {
+			checkIndex(index);
+			return new Location(latitudes[index], longitudes[index]);
+		}
+
+		public double getLatitude(int index) {
+			checkIndex(index);
+			return latitudes[index];
+		}
+
+		public double getLongitude(int index) {
+			checkIndex(index);
+			return longitudes[index];
+		}
+
+		public long getTimeMillis(int index) {
+			checkIndex(index);
+			return times[index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		private void checkIndex(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+		}
+	}
+}
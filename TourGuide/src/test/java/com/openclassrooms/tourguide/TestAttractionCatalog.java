@@ -0,0 +1,95 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.cache.NearbyAttractionsCache;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestAttractionCatalog {
+
+	private final GpsUtil gpsUtil = new GpsUtil();
+
+	@Test
+	public void attractionsAreLoadedOnceAndLookedUp() {
+		AtomicInteger loads = new AtomicInteger();
+		AttractionCatalog catalog = new AttractionCatalog(() -> {
+			loads.incrementAndGet();
+			return gpsUtil.getAttractions();
+		});
+		AttractionCatalog.Snapshot snapshot = catalog.get();
+		for (int i = 0; i < 10; i++) {
+			assertSame(snapshot, catalog.get());
+			assertSame(snapshot.getIndex(), catalog.getIndex());
+		}
+		assertEquals(1, loads.get());
+		assertEquals(1, snapshot.getVersion());
+
+		Attraction disneyland = snapshot.getAttractions().get(0);
+		assertSame(disneyland, snapshot.getAttraction(disneyland.attractionId));
+		assertSame(disneyland, snapshot.getAttraction("Disneyland"));
+		assertNull(snapshot.getAttraction("Unknown Park"));
+		assertNull(snapshot.getAttraction(UUID.randomUUID()));
+	}
+
+	@Test
+	public void refreshPublishesANewVersionWithoutBlockingReaders() {
+		List<Attraction> attractions = new ArrayList<>(gpsUtil.getAttractions());
+		AttractionCatalog catalog = new AttractionCatalog(() -> List.copyOf(attractions));
+		AttractionCatalog.Snapshot first = catalog.get();
+		NearbyAttractionsCache cache = new NearbyAttractionsCache(catalog::getIndex, 5, Duration.ofMinutes(1),
+				new SimpleMeterRegistry());
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(
+				new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008), new Date()));
+		assertSame(first.getIndex(), cache.get(user).getIndex());
+
+		AtomicBoolean refreshing = new AtomicBoolean(true);
+		CompletableFuture<Long> readers = CompletableFuture.supplyAsync(() -> {
+			long reads = 0;
+			do {
+				// a reader always gets a complete version
+				assertTrue(catalog.get().getAttractions().size() >= first.getAttractions().size());
+				reads++;
+			} while (refreshing.get());
+			return reads;
+		});
+		attractions.add(new Attraction("Catalog Park", "Anaheim", "CA", 33.8, -117.9));
+		AttractionCatalog.Snapshot second = null;
+		for (int i = 0; i < 20; i++) {
+			second = catalog.refresh();
+		}
+		refreshing.set(false);
+		assertTrue(readers.join() > 0);
+
+		assertEquals(21, second.getVersion());
+		assertSame(second, catalog.get());
+		assertEquals(first.getAttractions().size() + 1, second.getAttractions().size());
+		assertNull(first.getAttraction("Catalog Park"));
+		assertEquals("Catalog Park", second.getAttraction("Catalog Park").attractionName);
+		// snapshots of a previous version are computed again against the new one
+		assertNotSame(first.getIndex(), cache.get(user).getIndex());
+		assertSame(second.getIndex(), cache.get(user).getIndex());
+	}
+}
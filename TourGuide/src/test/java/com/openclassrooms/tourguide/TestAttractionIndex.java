@@ -0,0 +1,103 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.DistanceEngine;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+public class TestAttractionIndex {
+
+	@Test
+	public void withinMatchesFullScan() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		AttractionIndex index = new AttractionIndex(attractions);
+
+		Random random = new Random(42);
+		double[] radii = { 0, 10, 200, 1500, 10000, Integer.MAX_VALUE };
+		for (int i = 0; i < 2000; i++) {
+			Location location = i % 2 == 0
+					? new Location(-85 + random.nextDouble() * 170, -180 + random.nextDouble() * 360)
+					// stay close to the attractions so that the small radii match something
+					: new Location(attractions.get(i % attractions.size()).latitude + random.nextGaussian() * 0.2,
+							attractions.get(i % attractions.size()).longitude + random.nextGaussian() * 0.2);
+			for (double radius : radii) {
+				Set<String> expected = attractions.stream()
+						.filter(a -> !(rewardsService.getDistance(a, location) > radius))
+						.map(a -> a.attractionName).collect(Collectors.toSet());
+				Set<String> actual = new HashSet<>();
+				index.within(location, radius).forEach(a -> actual.add(a.attractionName));
+				assertEquals(expected, actual);
+			}
+		}
+	}
+
+	@Test
+	public void distanceEngineMatchesGetDistance() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		DistanceEngine engine = new DistanceEngine(attractions);
+
+		Random random = new Random(7);
+		for (int i = 0; i < 10000; i++) {
+			Location location = new Location(-90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360);
+			DistanceEngine.Point point = DistanceEngine.point(location);
+			for (int a = 0; a < attractions.size(); a++) {
+				double expected = rewardsService.getDistance(attractions.get(a), location);
+				assertEquals(expected, engine.distance(a, point), DistanceEngine.TOLERANCE_MILES);
+			}
+		}
+		// coincident points: the original formula may give NaN, the engine gives 0
+		assertEquals(0, engine.distance(0, DistanceEngine.point(attractions.get(0))), DistanceEngine.TOLERANCE_MILES);
+	}
+
+	@Test
+	public void nearestMatchesFullSort() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		AttractionIndex index = new AttractionIndex(attractions);
+
+		Random random = new Random(3);
+		for (int i = 0; i < 1000; i++) {
+			Location location = new Location(-85 + random.nextDouble() * 170, -180 + random.nextDouble() * 360);
+			List<String> expected = attractions.stream()
+					.sorted(Comparator.comparingDouble(a -> rewardsService.getDistance(a, location)))
+					.limit(5).map(a -> a.attractionName).toList();
+			List<String> actual = Arrays.stream(index.nearest(location, 5))
+					.mapToObj(n -> attractions.get(n).attractionName).toList();
+			assertEquals(expected, actual);
+		}
+		assertEquals(attractions.size(), index.nearest(new Location(0, 0), 1000).length);
+	}
+
+	@Test
+	public void withinAcrossAntimeridian() {
+		Attraction east = new Attraction("East", "", "", 0, 179.95);
+		Attraction west = new Attraction("West", "", "", 0, -179.95);
+		AttractionIndex index = new AttractionIndex(List.of(east, west));
+
+		List<Attraction> found = index.within(new Location(0, 180), 10);
+
+		assertEquals(2, found.size());
+		assertTrue(index.isWithin(west, east, 10));
+	}
+}
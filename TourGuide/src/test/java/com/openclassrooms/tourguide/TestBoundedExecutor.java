@@ -0,0 +1,102 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.openclassrooms.tourguide.executor.BoundedExecutor;
+import com.openclassrooms.tourguide.executor.BoundedExecutor.Mode;
+import com.openclassrooms.tourguide.executor.BoundedExecutor.RejectionPolicy;
+
+public class TestBoundedExecutor {
+
+	@ParameterizedTest
+	@EnumSource(Mode.class)
+	public void neverRunsMoreThanConcurrency(Mode mode) {
+		BoundedExecutor executor = new BoundedExecutor("test", mode, 4, 10, RejectionPolicy.BLOCK);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			futures.add(executor.run(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(2);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+			}));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		executor.shutdown(5, TimeUnit.SECONDS);
+
+		assertTrue(maxRunning.get() <= 4);
+	}
+
+	@ParameterizedTest
+	@EnumSource(Mode.class)
+	public void abortPolicyRejectsWhenFull(Mode mode) throws InterruptedException {
+		BoundedExecutor executor = new BoundedExecutor("test", mode, 1, 1, RejectionPolicy.ABORT);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture<Void> first = executor.run(() -> {
+			started.countDown();
+			awaitQuietly(release);
+		});
+		started.await();
+		CompletableFuture<Void> queued = executor.run(() -> awaitQuietly(release));
+
+		assertThrows(RejectedExecutionException.class, () -> executor.run(() -> {
+		}));
+		assertEquals(1, executor.getQueueSize());
+
+		release.countDown();
+		CompletableFuture.allOf(first, queued).join();
+		executor.shutdown(5, TimeUnit.SECONDS);
+	}
+
+	@ParameterizedTest
+	@EnumSource(Mode.class)
+	public void closeDrainsQueuedTasks(Mode mode) {
+		BoundedExecutor executor = new BoundedExecutor("test", mode, 2, 50, RejectionPolicy.BLOCK,
+				Duration.ofSeconds(5));
+		AtomicInteger completed = new AtomicInteger();
+		for (int i = 0; i < 50; i++) {
+			executor.run(() -> {
+				try {
+					Thread.sleep(2);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				completed.incrementAndGet();
+			});
+		}
+
+		executor.close();
+
+		assertEquals(50, completed.get());
+		assertThrows(RejectedExecutionException.class, () -> executor.run(() -> {
+		}));
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import com.openclassrooms.tourguide.health.InternalUsersHealthIndicator;
+import com.openclassrooms.tourguide.helper.InternalUserLoader;
+import com.openclassrooms.tourguide.user.ShardedUserRegistry;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserRegistry;
+import com.openclassrooms.tourguide.user.VisitedLocationLog;
+
+public class TestInternalUserLoader {
+
+	@Test
+	public void sameSeedGivesSameUsers() {
+		int count = 3 * InternalUserLoader.CHUNK_SIZE + 10;
+		UserRegistry parallel = new ShardedUserRegistry();
+		new InternalUserLoader(42, false, ForkJoinPool.commonPool()).load(parallel, count);
+		UserRegistry sequential = new ShardedUserRegistry();
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		new InternalUserLoader(42, false, single).load(sequential, count);
+		single.shutdown();
+		UserRegistry otherSeed = new ShardedUserRegistry();
+		new InternalUserLoader(43, false, ForkJoinPool.commonPool()).load(otherSeed, count);
+
+		assertEquals(count, parallel.size());
+		for (int i = 0; i < count; i++) {
+			User expected = sequential.get("internalUser" + i);
+			User actual = parallel.get("internalUser" + i);
+			assertEquals(expected.getUserId(), actual.getUserId());
+			VisitedLocationLog.Snapshot expectedHistory = expected.getLocationHistory();
+			VisitedLocationLog.Snapshot actualHistory = actual.getLocationHistory();
+			assertEquals(3, actualHistory.size());
+			for (int j = 0; j < 3; j++) {
+				assertEquals(expectedHistory.getLatitude(j), actualHistory.getLatitude(j));
+				assertEquals(expectedHistory.getLongitude(j), actualHistory.getLongitude(j));
+			}
+			assertNotEquals(expected.getUserId(), otherSeed.get("internalUser" + i).getUserId());
+		}
+	}
+
+	@Test
+	public void asyncLoadReportsReadiness() {
+		CountDownLatch release = new CountDownLatch(1);
+		Executor gated = task -> ForkJoinPool.commonPool().execute(() -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			task.run();
+		});
+		InternalUserLoader loader = new InternalUserLoader(0, true, gated);
+		InternalUsersHealthIndicator health = new InternalUsersHealthIndicator(loader);
+		UserRegistry registry = new ShardedUserRegistry();
+
+		CompletableFuture<Integer> loaded = loader.load(registry, 2000);
+
+		assertFalse(loader.isLoaded());
+		assertEquals(Status.OUT_OF_SERVICE, health.health().getStatus());
+		release.countDown();
+		assertEquals(2000, loaded.join());
+		assertTrue(loader.isLoaded());
+		assertEquals(2000, registry.size());
+		assertEquals(Status.UP, health.health().getStatus());
+		assertEquals(2000, health.health().getDetails().get("loaded"));
+	}
+}
@@ -0,0 +1,167 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.persistence.JournalStore;
+import com.openclassrooms.tourguide.user.RetentionPolicy;
+import com.openclassrooms.tourguide.user.ShardedUserRegistry;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserRegistry;
+import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationLog;
+
+public class TestJournalStore {
+
+	private static final List<Attraction> attractions = List
+			.of(new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008));
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void restoreReplaysSnapshotAndSegments() {
+		UserRegistry registry;
+		User jon = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User jon2 = new User(UUID.randomUUID(), "jon2", "000", null);
+		try (JournalStore store = newStore(4096)) {
+			registry = newRegistry(store);
+			registry.add(jon);
+			for (int i = 0; i < 10; i++) {
+				jon.addToVisitedLocations(
+						new VisitedLocation(jon.getUserId(), new Location(i, -i), new Date(i * 1000L)));
+			}
+			jon.addUserReward(new UserReward(jon.getLastVisitedLocation(), attractions.get(0), 42));
+			jon.advanceRewardedLocationCount(10);
+			// jon is now in the snapshot, the rest only in the segments
+			store.compact();
+			registry.add(jon2);
+			jon.addToVisitedLocations(new VisitedLocation(jon.getUserId(), new Location(10, -10), null));
+			jon2.addToVisitedLocations(new VisitedLocation(jon2.getUserId(), new Location(1, 2), new Date(3)));
+			jon2.addUserReward(new UserReward(jon2.getLastVisitedLocation(),
+					new Attraction("Closed", "Nowhere", "NV", 1, 2), 7));
+		}
+
+		try (JournalStore store = newStore(4096)) {
+			UserRegistry restored = newRegistry(store);
+
+			assertEquals(2, restored.size());
+			assertSameUser(jon, restored.get(jon.getUserId()));
+			assertSameUser(jon2, restored.get("jon2"));
+			assertNull(restored.get("jon2").getEmailAddress());
+			User restoredJon = restored.get("jon");
+			assertEquals(10, restoredJon.getRewardedLocationCount());
+			// rewarded attractions still listed are matched by name
+			assertTrue(restoredJon.getUserRewards().get("Disneyland").attraction == attractions.get(0));
+			assertNull(restoredJon.getLastVisitedLocation().timeVisited);
+		}
+	}
+
+	@Test
+	public void restoreHonoursClearsAndSequenceOrder() {
+		User jon = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User jon2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+		try (JournalStore store = newStore(4096)) {
+			UserRegistry registry = newRegistry(store);
+			registry.add(jon);
+			registry.add(jon2);
+			for (int i = 0; i < 5; i++) {
+				jon.addToVisitedLocations(new VisitedLocation(jon.getUserId(), new Location(i, i), new Date(i)));
+			}
+			// the cleared history of jon is in the snapshot, the clear only in the segment
+			store.compact();
+			jon.clearVisitedLocations();
+			jon.addToVisitedLocations(new VisitedLocation(jon.getUserId(), new Location(5, 5), new Date(5)));
+			// records of concurrent writers reserved in the opposite order of their locations
+			store.locationAdded(jon2, 1, new VisitedLocation(jon2.getUserId(), new Location(1, 1), new Date(1)));
+			store.locationAdded(jon2, 0, new VisitedLocation(jon2.getUserId(), new Location(0, 0), new Date(0)));
+		}
+
+		try (JournalStore store = newStore(4096)) {
+			UserRegistry restored = newRegistry(store);
+
+			assertSameUser(jon, restored.get("jon"));
+			assertEquals(6, restored.get("jon").getLocationHistory().getEndSequence());
+			VisitedLocationLog.Snapshot history = restored.get("jon2").getLocationHistory();
+			assertEquals(2, history.size());
+			assertEquals(0, history.getLatitude(0));
+			assertEquals(1, history.getLatitude(1));
+		}
+	}
+
+	@Test
+	public void concurrentWritersRollSegments() throws Exception {
+		int writers = 4;
+		int locations = 2000;
+		List<User> users = new ArrayList<>();
+		try (JournalStore store = newStore(4096)) {
+			UserRegistry registry = newRegistry(store);
+			ExecutorService executor = Executors.newFixedThreadPool(writers);
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int w = 0; w < writers; w++) {
+				User user = new User(UUID.randomUUID(), "writer" + w, "000", "writer@tourGuide.com");
+				registry.add(user);
+				users.add(user);
+				futures.add(CompletableFuture.runAsync(() -> {
+					for (int i = 0; i < locations; i++) {
+						user.addToVisitedLocations(
+								new VisitedLocation(user.getUserId(), new Location(i, i), new Date(i)));
+					}
+				}, executor));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+			executor.shutdown();
+		}
+
+		try (JournalStore store = newStore(4096)) {
+			UserRegistry restored = newRegistry(store);
+			for (User user : users) {
+				assertSameUser(user, restored.get(user.getUserId()));
+			}
+		}
+	}
+
+	private JournalStore newStore(int segmentSize) {
+		return new JournalStore(directory, segmentSize, Duration.ofSeconds(1), Duration.ofHours(1));
+	}
+
+	private static UserRegistry newRegistry(JournalStore store) {
+		UserRegistry registry = new ShardedUserRegistry(4, RetentionPolicy.UNBOUNDED, store);
+		store.restore(registry, attractions);
+		return registry;
+	}
+
+	private static void assertSameUser(User expected, User actual) {
+		assertEquals(expected.getUserName(), actual.getUserName());
+		assertEquals(expected.getPhoneNumber(), actual.getPhoneNumber());
+		VisitedLocationLog.Snapshot expectedHistory = expected.getLocationHistory();
+		VisitedLocationLog.Snapshot actualHistory = actual.getLocationHistory();
+		assertEquals(expectedHistory.size(), actualHistory.size());
+		assertEquals(expectedHistory.getEndSequence(), actualHistory.getEndSequence());
+		for (int i = 0; i < expectedHistory.size(); i++) {
+			assertEquals(expectedHistory.getLatitude(i), actualHistory.getLatitude(i));
+			assertEquals(expectedHistory.getLongitude(i), actualHistory.getLongitude(i));
+			assertEquals(expectedHistory.getTimeMillis(i), actualHistory.getTimeMillis(i));
+		}
+		assertEquals(expected.getUserRewards().keySet(), actual.getUserRewards().keySet());
+		expected.getUserRewards().forEach((name, reward) -> assertEquals(reward.getRewardPoints(),
+				actual.getUserRewards().get(name).getRewardPoints()));
+	}
+}
@@ -0,0 +1,132 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.event.LocationEventBus;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestLocationEventBus {
+
+	@Test
+	public void everyHandlerGetsCoalescedBatches() throws Exception {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			users.add(new User(UUID.randomUUID(), "user" + i, "000", "user@tourGuide.com"));
+		}
+		CountDownLatch firstBatch = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Set<User> active = ConcurrentHashMap.newKeySet();
+		AtomicInteger overlaps = new AtomicInteger();
+		List<List<User>> rewardBatches = Collections.synchronizedList(new ArrayList<>());
+		AtomicInteger otherEvents = new AtomicInteger();
+		try (LocationEventBus bus = new LocationEventBus(1, 1024, 1024)) {
+			bus.subscribe("rewards", batch -> CompletableFuture.runAsync(() -> {
+				for (User user : batch) {
+					if (!active.add(user)) {
+						overlaps.incrementAndGet();
+					}
+				}
+				firstBatch.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				rewardBatches.add(batch);
+				batch.forEach(active::remove);
+			}));
+			bus.subscribe("other", batch -> {
+				otherEvents.addAndGet(batch.size());
+				return CompletableFuture.completedFuture(null);
+			});
+
+			bus.publish(users.get(0));
+			assertTrue(firstBatch.await(5, TimeUnit.SECONDS));
+			// while the first batch is handled, every user gets ten fixes
+			for (int fix = 0; fix < 10; fix++) {
+				users.forEach(bus::publish);
+			}
+			release.countDown();
+			assertTrue(bus.awaitHandled(Duration.ofSeconds(10)));
+		}
+
+		assertEquals(0, overlaps.get());
+		int handled = 0;
+		for (List<User> batch : rewardBatches) {
+			assertEquals(batch.size(), Set.copyOf(batch).size());
+			handled += batch.size();
+		}
+		// the first user alone, then every user once
+		assertEquals(1 + users.size(), handled);
+		assertTrue(otherEvents.get() >= 1 + users.size());
+	}
+
+	@Test
+	public void fullPartitionBlocksProducers() throws Exception {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		CountDownLatch release = new CountDownLatch(1);
+		try (LocationEventBus bus = new LocationEventBus(1, 4, 1)) {
+			bus.subscribe("slow", batch -> CompletableFuture.runAsync(() -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+				for (int i = 0; i < 10; i++) {
+					bus.publish(user);
+				}
+			});
+
+			Thread.sleep(300);
+			assertFalse(producer.isDone());
+			assertEquals(5, bus.getPendingCount());
+			release.countDown();
+			producer.get(5, TimeUnit.SECONDS);
+			assertTrue(bus.awaitHandled(Duration.ofSeconds(5)));
+			assertEquals(0, bus.getPendingCount());
+		}
+	}
+
+	@Test
+	public void failedHandlerKeepsConsuming() throws Exception {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		AtomicInteger calls = new AtomicInteger();
+		try (LocationEventBus bus = new LocationEventBus(1, 4, 1)) {
+			bus.subscribe("failing", batch -> {
+				if (calls.incrementAndGet() == 1) {
+					throw new Error("Handler failure");
+				}
+				return CompletableFuture.completedFuture(null);
+			});
+			// more events than the partition holds: the producer waits on the consumer that failed
+			CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+				for (int i = 0; i < 10; i++) {
+					bus.publish(user);
+				}
+			});
+
+			producer.get(5, TimeUnit.SECONDS);
+			assertTrue(bus.awaitHandled(Duration.ofSeconds(5)));
+			assertEquals(0, bus.getPendingCount());
+			assertTrue(calls.get() > 1);
+		}
+	}
+}
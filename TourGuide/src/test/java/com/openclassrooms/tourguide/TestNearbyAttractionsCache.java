@@ -0,0 +1,99 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.DistanceEngine;
+import com.openclassrooms.tourguide.attraction.NearbyAttractions;
+import com.openclassrooms.tourguide.cache.NearbyAttractionsCache;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestNearbyAttractionsCache {
+
+	private final AttractionIndex index = new AttractionIndex(new GpsUtil().getAttractions());
+
+	@Test
+	public void snapshotFollowsTheLastFix() {
+		NearbyAttractionsCache cache = new NearbyAttractionsCache(() -> index, 5, Duration.ZERO,
+				new SimpleMeterRegistry());
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		assertNull(cache.get(user));
+
+		Location first = new Location(33.817595, -117.922008);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), first, new Date()));
+		cache.onLocations(List.of(user)).join();
+		NearbyAttractions nearby = user.getNearbyAttractions();
+		assertSame(nearby, cache.get(user));
+		assertArrayEquals(index.nearest(first, 5), attractionsOf(nearby));
+		for (int i = 0; i < nearby.size(); i++) {
+			assertEquals(index.getDistanceEngine().distance(nearby.getAttraction(i), DistanceEngine.point(first)),
+					nearby.getDistance(i), 1e-3);
+		}
+
+		Location second = new Location(-13.163111, -72.545128);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), second, new Date()));
+		// the event is not handled yet: a zero staleness recomputes the snapshot on read
+		NearbyAttractions recomputed = cache.get(user);
+		assertNotSame(nearby, recomputed);
+		assertArrayEquals(index.nearest(second, 5), attractionsOf(recomputed));
+		assertSame(recomputed, user.getNearbyAttractions());
+
+		// a late refresh of the same fix is not older than the stored snapshot
+		cache.refresh(user);
+		assertEquals(2, user.getNearbyAttractions().getSequence());
+	}
+
+	@Test
+	public void staleSnapshotIsServedWithinTheBound() {
+		NearbyAttractionsCache cache = new NearbyAttractionsCache(() -> index, 5, Duration.ofMinutes(1),
+				new SimpleMeterRegistry());
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		long start = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+		user.addToVisitedLocations(
+				new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008), new Date(start)));
+		NearbyAttractions nearby = cache.refresh(user);
+
+		Location later = new Location(-13.163111, -72.545128);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), later,
+				new Date(start + TimeUnit.SECONDS.toMillis(30))));
+		assertSame(nearby, cache.get(user));
+
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), later,
+				new Date(start + TimeUnit.MINUTES.toMillis(2))));
+		NearbyAttractions recomputed = cache.get(user);
+		assertEquals(3, recomputed.getSequence());
+		assertArrayEquals(index.nearest(later, 5), attractionsOf(recomputed));
+
+		// a new attraction index invalidates the snapshots
+		AttractionIndex[] current = { index };
+		NearbyAttractionsCache refreshed = new NearbyAttractionsCache(() -> current[0], 5, Duration.ofMinutes(1),
+				new SimpleMeterRegistry());
+		current[0] = new AttractionIndex(index.getAttractions());
+		assertSame(current[0], refreshed.get(user).getIndex());
+	}
+
+	private static int[] attractionsOf(NearbyAttractions nearby) {
+		int[] attractions = new int[nearby.size()];
+		for (int i = 0; i < attractions.length; i++) {
+			attractions[i] = nearby.getAttraction(i);
+		}
+		return attractions;
+	}
+}
@@ -1,25 +1,40 @@
 package com.openclassrooms.tourguide;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserLoader;
+import com.openclassrooms.tourguide.service.BulkRewardsCalculation;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackingResult;
 import com.openclassrooms.tourguide.user.User;
 
 @SpringBootTest
@@ -46,8 +61,24 @@ public class TestPerformance {
 	 * highVolumeGetRewards: 100,000 users within 20 minutes:
 	 * assertTrue(TimeUnit.MINUTES.toSeconds(20) >=
 	 * TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+	 *
+	 * highVolumeConcurrentRequests: every internal user asks for its nearby
+	 * attractions and trip deals at once, through 8 servlet threads, and more
+	 * requests than servlet threads are waiting for RewardCentral or TripPricer
+	 * once they are all accepted.
 	 */
 
+	private static final int SERVLET_THREADS = 8;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private TourGuideService tourGuideService;
+
+	@Autowired
+	private InternalUserLoader internalUserLoader;
+
 	@Test
 	public void highVolumeTrackLocation() throws InterruptedException, ExecutionException {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -62,18 +93,12 @@ public class TestPerformance {
 
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
-		@SuppressWarnings("unchecked")
-		CompletableFuture<VisitedLocation>[] future = new CompletableFuture[allUsers.size()];
-		for (int i = 0; i < allUsers.size(); i++) {
-			CompletableFuture<VisitedLocation> visitedLocation = tourGuideService.trackUserLocation(allUsers.get(i));
-			future[i]=visitedLocation;
-		}
-
-		CompletableFuture.allOf(future).join();
+		TrackingResult result = tourGuideService.trackUserLocations(allUsers).join();
 		
 		stopWatch.stop();
-		tourGuideService.tracker.stopTracking();
+		tourGuideService.shutdown();
 
+		assertEquals(allUsers.size(), result.getTrackedCount());
 		System.out.println("highVolumeTrackLocation: Time Elapsed: "
 				+ TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
 		assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
@@ -95,23 +120,58 @@ public class TestPerformance {
 		List<User> allUsers = tourGuideService.getAllUsers();
 		allUsers.forEach(u -> u.addToVisitedLocations(new VisitedLocation(u.getUserId(), attraction, new Date())));
 
-		Thread[] futures = new Thread[allUsers.size()];
-
-		for (int i = 0; i < futures.length; i++) {
-			futures[i] = rewardsService.calculateRewardsThread(allUsers.get(i));
-			futures[i].start();
-		}
-		for (int i = 0; i < futures.length; i++) {
-			futures[i].join();
-		}
+		// chunks of users on as many threads as processors, RewardCentral called on the bounded cache executor
+		BulkRewardsCalculation calculation = rewardsService.calculateRewardsForAll(allUsers.stream());
+		calculation.getCompletion().join();
+		assertEquals(allUsers.size(), calculation.getProcessedUsers());
+		assertEquals(0, calculation.getFailedUsers());
 		for (int i = 0; i < allUsers.size(); i++) {
 			assertTrue(allUsers.get(i).getUserRewards().size() > 0);
 		}
 		stopWatch.stop();
-		tourGuideService.tracker.stopTracking();
+		tourGuideService.shutdown();
 
 		System.out.println("highVolumeGetRewards: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime())
 				+ " seconds.");
 		assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
 	}
+
+	@Test
+	public void highVolumeConcurrentRequests() throws Exception {
+		internalUserLoader.getCompletion().join();
+		List<User> allUsers = tourGuideService.getAllUsers();
+		ExecutorService servletThreads = Executors.newFixedThreadPool(SERVLET_THREADS);
+
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+		// a servlet thread only starts the request: it returns before RewardCentral or TripPricer answer
+		List<Future<MvcResult>> started = new ArrayList<>();
+		for (User user : allUsers) {
+			for (String endpoint : List.of("/getNearbyAttractions", "/getTripDeals")) {
+				started.add(servletThreads.submit(() -> mockMvc.perform(get(endpoint).param("userName", user.getUserName()))
+						.andExpect(request().asyncStarted())
+						.andReturn()));
+			}
+		}
+		List<MvcResult> results = new ArrayList<>();
+		for (Future<MvcResult> request : started) {
+			results.add(request.get());
+		}
+		long acceptedMillis = stopWatch.getTime();
+		// a blocking servlet thread would only return its request once answered, leaving none in flight
+		long inFlight = results.stream()
+				.filter(result -> ((MockAsyncContext) result.getRequest().getAsyncContext()).getDispatchedPath() == null)
+				.count();
+		for (MvcResult result : results) {
+			result.getAsyncResult(TimeUnit.SECONDS.toMillis(30));
+			mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+		}
+		stopWatch.stop();
+		servletThreads.shutdown();
+
+		System.out.println("highVolumeConcurrentRequests: " + results.size() + " requests accepted in " + acceptedMillis
+				+ " ms with " + inFlight + " in flight, answered in " + stopWatch.getTime() + " ms.");
+		assumeTrue(results.size() > SERVLET_THREADS);
+		assertTrue(inFlight > SERVLET_THREADS);
+	}
 }
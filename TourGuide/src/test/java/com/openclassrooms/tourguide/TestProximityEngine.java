@@ -0,0 +1,136 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import rewardCentral.RewardCentral;
+
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.ProximityEngine;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestProximityEngine {
+
+	private final GpsUtil gpsUtil = new GpsUtil();
+	private final List<Attraction> attractions = gpsUtil.getAttractions();
+
+	@Test
+	public void approachingAnAttractionLeavesTheRegion() {
+		AttractionIndex index = new AttractionIndex(attractions);
+		ProximityEngine engine = new ProximityEngine(5);
+		Attraction attraction = attractions.get(0);
+		// 12 miles north of the attraction: near, but outside the 10 miles buffer
+		Location start = new Location(attraction.latitude + 12 / AttractionIndex.MILES_PER_DEGREE,
+				attraction.longitude);
+		List<Attraction> entered = new ArrayList<>();
+		List<Attraction> near = new ArrayList<>();
+		ProximityEngine.ProximityListener listener = new ProximityEngine.ProximityListener() {
+			@Override
+			public void onEnter(Attraction a) {
+				entered.add(a);
+			}
+
+			@Override
+			public void onNear(Attraction a, double distanceMiles) {
+				near.add(a);
+			}
+		};
+
+		ProximityEngine.Region region = engine.evaluate(index, 10, start, a -> false, listener);
+
+		assertTrue(entered.isEmpty());
+		assertTrue(near.contains(attraction));
+		assertEquals(2, region.getSafeRadiusMiles(), 0.01);
+		// a mile closer stays in the region, three miles closer does not
+		assertTrue(engine.isInside(region, index, 10,
+				new Location(start.latitude - 1 / AttractionIndex.MILES_PER_DEGREE, start.longitude)));
+		Location closer = new Location(start.latitude - 3 / AttractionIndex.MILES_PER_DEGREE, start.longitude);
+		assertFalse(engine.isInside(region, index, 10, closer));
+		engine.evaluate(index, 10, closer, a -> false, listener);
+		assertEquals(List.of(attraction), entered);
+		// a new buffer or index invalidates the region
+		assertFalse(engine.isInside(region, index, 20, start));
+		assertFalse(engine.isInside(region, new AttractionIndex(attractions), 10, start));
+	}
+
+	@Test
+	public void skippedLocationsEarnTheSameRewards() {
+		SplittableRandom random = new SplittableRandom(11);
+		List<List<VisitedLocation>> histories = new ArrayList<>();
+		for (int u = 0; u < 50; u++) {
+			// random walks around the attractions, in steps of up to half a mile
+			Attraction origin = attractions.get(random.nextInt(attractions.size()));
+			double latitude = origin.latitude + random.nextDouble(-0.5, 0.5);
+			double longitude = origin.longitude + random.nextDouble(-0.5, 0.5);
+			List<VisitedLocation> history = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				latitude += random.nextDouble(-0.007, 0.007);
+				longitude += random.nextDouble(-0.007, 0.007);
+				history.add(new VisitedLocation(null, new Location(latitude, longitude), new Date()));
+			}
+			histories.add(history);
+		}
+
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		List<User> everyLocation = reward(histories, new ProximityEngine(0), new SimpleMeterRegistry());
+		List<User> skipping = reward(histories, new ProximityEngine(5), meterRegistry);
+
+		int rewards = 0;
+		for (int u = 0; u < histories.size(); u++) {
+			assertEquals(everyLocation.get(u).getUserRewards().keySet(), skipping.get(u).getUserRewards().keySet());
+			rewards += skipping.get(u).getUserRewards().size();
+		}
+		assertTrue(rewards > 0);
+		double skipped = meterRegistry.get(TourGuideMetrics.REWARDS_LOCATIONS_SKIPPED).counter().count();
+		double evaluated = meterRegistry.get(TourGuideMetrics.REWARDS_LOCATIONS).counter().count();
+		assertEquals(50 * 200, skipped + evaluated);
+		assertTrue(skipped > evaluated);
+	}
+
+	private List<User> reward(List<List<VisitedLocation>> histories, ProximityEngine engine,
+			SimpleMeterRegistry meterRegistry) {
+		RewardCentral rewardCentral = new RewardCentral() {
+			@Override
+			public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+				return 1;
+			}
+		};
+		RewardPointsCache cache = new RewardPointsCache(rewardCentral, Runnable::run, Duration.ofMinutes(1), 1000,
+				meterRegistry);
+		RewardsService rewardsService = new RewardsService(gpsUtil, cache, RewardsService.defaultRewardExecutor(),
+				engine, meterRegistry);
+		List<User> users = new ArrayList<>();
+		for (int u = 0; u < histories.size(); u++) {
+			User user = new User(new UUID(0, u), "user" + u, "000", "user" + u + "@tourGuide.com");
+			List<VisitedLocation> history = histories.get(u);
+			// rewarded as the fixes come, ten at a time
+			for (int i = 0; i < history.size(); i++) {
+				user.addToVisitedLocations(
+						new VisitedLocation(user.getUserId(), history.get(i).location, history.get(i).timeVisited));
+				if (i % 10 == 9) {
+					rewardsService.calculateRewards(user);
+				}
+			}
+			users.add(user);
+		}
+		return users;
+	}
+}
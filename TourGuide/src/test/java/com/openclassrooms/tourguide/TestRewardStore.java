@@ -0,0 +1,83 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.attraction.AttractionIds;
+import com.openclassrooms.tourguide.user.RewardStore;
+import com.openclassrooms.tourguide.user.UserReward;
+
+public class TestRewardStore {
+
+	@Test
+	public void rewardsAreMaterializedFromTheStore() {
+		UUID userId = UUID.randomUUID();
+		RewardStore store = new RewardStore(userId);
+		Attraction attraction = new Attraction("Reward Store Park", "Anaheim", "CA", 33.817595, -117.922008);
+		Date time = new Date();
+		assertFalse(store.contains(attraction.attractionName));
+
+		assertTrue(store.add(new UserReward(new VisitedLocation(userId, new Location(33.8, -117.9), time),
+				attraction, 42)));
+		// another instance of the same attraction is not rewarded again
+		Attraction copy = new Attraction(attraction.attractionName, "Anaheim", "CA", 33.817595, -117.922008);
+		assertFalse(store.add(new UserReward(new VisitedLocation(userId, new Location(0, 0), null), copy, 1)));
+
+		assertTrue(store.contains(AttractionIds.find(attraction.attractionName)));
+		assertEquals(1, store.size());
+		assertEquals(42, store.getTotalPoints());
+		Map<String, UserReward> rewards = store.asMap();
+		UserReward reward = rewards.get(attraction.attractionName);
+		assertSame(attraction, reward.attraction);
+		assertEquals(42, reward.getRewardPoints());
+		assertEquals(userId, reward.visitedLocation.userId);
+		assertEquals(33.8, reward.visitedLocation.location.latitude);
+		assertEquals(time, reward.visitedLocation.timeVisited);
+		assertNull(rewards.get("Unknown Park"));
+		assertThrows(UnsupportedOperationException.class, () -> rewards.remove(attraction.attractionName));
+	}
+
+	@Test
+	public void concurrentRewardsAreAllStored() {
+		UUID userId = UUID.randomUUID();
+		RewardStore store = new RewardStore(userId);
+		Map<String, UserReward> view = store.asMap();
+		List<Attraction> attractions = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			attractions.add(new Attraction("Reward Store Attraction " + i, "City", "ST", i % 90, i));
+		}
+
+		List<CompletableFuture<Boolean>> adds = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			Attraction attraction = attractions.get(i % attractions.size());
+			int points = i % attractions.size();
+			adds.add(CompletableFuture.supplyAsync(() -> store.add(new UserReward(
+					new VisitedLocation(userId, attraction, new Date()), attraction, points))));
+		}
+		long added = adds.stream().filter(CompletableFuture::join).count();
+
+		assertEquals(attractions.size(), added);
+		assertEquals(attractions.size(), view.size());
+		assertEquals(199 * 200 / 2, store.getTotalPoints());
+		for (Attraction attraction : attractions) {
+			assertSame(attraction, view.get(attraction.attractionName).attraction);
+		}
+	}
+}
@@ -1,13 +1,22 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
 import java.util.Date;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
@@ -15,7 +24,12 @@ import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.executor.BoundedExecutor;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.service.BulkRewardsCalculation;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
@@ -39,10 +53,164 @@ public class TestRewardsService {
 		visitedLocationContainer.get();
 		Thread.sleep(2000);
 		Map<String,UserReward> userRewards = user.getUserRewards();
-		tourGuideService.tracker.stopTracking();
+		tourGuideService.shutdown();
 		assertTrue(userRewards.size() == 1);
 	}
 
+	@Test
+	public void incrementalRewardsOnlyEvaluateNewLocations() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction first = gpsUtil.getAttractions().get(0);
+		Attraction second = gpsUtil.getAttractions().get(1);
+
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), first, new Date()));
+		rewardsService.calculateRewards(user);
+		assertEquals(1, user.getUserRewards().size());
+		assertEquals(1, user.getRewardedLocationCount());
+
+		// the first location is not evaluated again even with a wider buffer
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		rewardsService.calculateRewards(user);
+		assertEquals(1, user.getUserRewards().size());
+
+		rewardsService.setDefaultProximityBuffer();
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), second, new Date()));
+		rewardsService.calculateRewards(user);
+		assertEquals(2, user.getUserRewards().size());
+		assertEquals(2, user.getRewardedLocationCount());
+	}
+
+	@Test
+	public void rewardPointsCacheCoalescesConcurrentMisses() {
+		AtomicInteger upstreamCalls = new AtomicInteger();
+		RewardCentral rewardCentral = new RewardCentral() {
+			@Override
+			public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+				upstreamCalls.incrementAndGet();
+				return super.getAttractionRewardPoints(attractionId, userId);
+			}
+		};
+		RewardPointsCache cache = new RewardPointsCache(rewardCentral);
+		UUID attractionId = UUID.randomUUID();
+		UUID userId = UUID.randomUUID();
+
+		List<Integer> points = IntStream.range(0, 50).mapToObj(i -> cache.getRewardPoints(attractionId, userId))
+				.toList().stream().map(CompletableFuture::join).toList();
+
+		assertEquals(1, upstreamCalls.get());
+		assertEquals(1, points.stream().distinct().count());
+		assertEquals(1, cache.getStats().missCount());
+		assertEquals(49, cache.getStats().hitCount());
+	}
+
+	@Test
+	public void calculateRewardsPublishesMetrics() {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		GpsUtil gpsUtil = new GpsUtil();
+		BoundedExecutor rewardCentralExecutor = new BoundedExecutor("reward-central", BoundedExecutor.Mode.VIRTUAL,
+				10, 100, BoundedExecutor.RejectionPolicy.BLOCK);
+		RewardPointsCache cache = new RewardPointsCache(new RewardCentral(), rewardCentralExecutor,
+				Duration.ofMinutes(1), 100, meterRegistry);
+		RewardsService rewardsService = new RewardsService(gpsUtil, cache, RewardsService.defaultRewardExecutor(),
+				meterRegistry);
+		rewardsService.getRewardExecutor().bindTo(meterRegistry);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), gpsUtil.getAttractions().get(0), new Date()));
+
+		rewardsService.calculateRewards(user);
+
+		assertEquals(1, meterRegistry.get(TourGuideMetrics.REWARDS_CALCULATION).timer().count());
+		assertEquals(1, meterRegistry.get(TourGuideMetrics.REWARDS_LOCATIONS).counter().count());
+		assertEquals(1, meterRegistry.get(TourGuideMetrics.REWARDS_GRANTED).counter().count());
+		assertEquals(1, meterRegistry.get(TourGuideMetrics.EXTERNAL_LATENCY).tag("service", "rewardCentral").timer()
+				.count());
+		assertEquals(0, meterRegistry.get("tourguide.executor.queued").tag("executor", "rewards").gauge().value());
+		rewardCentralExecutor.close();
+	}
+
+	@Test
+	public void calculateRewardsForAllReportsProgress() {
+		AtomicInteger upstreamCalls = new AtomicInteger();
+		RewardsService rewardsService = bulkRewardsService(upstreamCalls, new CountDownLatch(0));
+		List<Attraction> attractions = rewardsService.getAttractionCatalog().get().getAttractions();
+		List<User> users = IntStream.range(0, 1000).mapToObj(i -> {
+			User user = new User(new UUID(0, i), "user" + i, "000", "user" + i + "@tourGuide.com");
+			user.addToVisitedLocations(
+					new VisitedLocation(user.getUserId(), attractions.get(i % attractions.size()), new Date()));
+			return user;
+		}).toList();
+		Queue<Long> progress = new ConcurrentLinkedQueue<>();
+
+		BulkRewardsCalculation calculation = rewardsService.calculateRewardsForAll(users.stream(), 64, 2,
+				progress::add);
+		calculation.getCompletion().join();
+
+		assertEquals(1000, calculation.getProcessedUsers());
+		assertEquals(0, calculation.getFailedUsers());
+		// one report per chunk, the last one once every user is done
+		assertEquals(16, progress.size());
+		assertEquals(1000, progress.stream().mapToLong(Long::longValue).max().getAsLong());
+		// one lookup per reward, a few attractions being close enough to others to earn both
+		assertEquals(users.stream().mapToInt(user -> user.getUserRewards().size()).sum(), upstreamCalls.get());
+		users.forEach(user -> {
+			assertTrue(user.getUserRewards().size() >= 1);
+			assertEquals(1, user.getRewardedLocationCount());
+		});
+	}
+
+	@Test
+	public void calculateRewardsForAllCanBeCancelled() throws InterruptedException {
+		AtomicInteger upstreamCalls = new AtomicInteger();
+		CountDownLatch rewardCentralAvailable = new CountDownLatch(1);
+		RewardsService rewardsService = bulkRewardsService(upstreamCalls, rewardCentralAvailable);
+		Attraction attraction = rewardsService.getAttractionCatalog().get().getAttractions().get(0);
+		List<User> users = IntStream.range(0, 1000).mapToObj(i -> {
+			User user = new User(new UUID(0, i), "user" + i, "000", "user" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+			return user;
+		}).toList();
+
+		BulkRewardsCalculation calculation = rewardsService.calculateRewardsForAll(users.stream(), 10, 1,
+				processed -> {
+				});
+		// the driver stops reading the stream while four chunks wait for RewardCentral
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (upstreamCalls.get() < 40 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(40, calculation.getSubmittedUsers());
+		calculation.cancel();
+		rewardCentralAvailable.countDown();
+
+		assertThrows(CancellationException.class, () -> calculation.getCompletion().join());
+		assertEquals(40, calculation.getProcessedUsers());
+		assertEquals(40, users.stream().filter(user -> user.getUserRewards().size() == 1).count());
+		assertEquals(0, users.get(999).getRewardedLocationCount());
+	}
+
+	private static RewardsService bulkRewardsService(AtomicInteger upstreamCalls, CountDownLatch available) {
+		RewardCentral rewardCentral = new RewardCentral() {
+			@Override
+			public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+				upstreamCalls.incrementAndGet();
+				try {
+					available.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return 1;
+			}
+		};
+		BoundedExecutor rewardCentralExecutor = new BoundedExecutor("reward-central", BoundedExecutor.Mode.VIRTUAL,
+				1000, 10_000, BoundedExecutor.RejectionPolicy.BLOCK);
+		RewardPointsCache cache = new RewardPointsCache(rewardCentral, rewardCentralExecutor, Duration.ofMinutes(1),
+				10_000, new SimpleMeterRegistry());
+		return new RewardsService(new GpsUtil(), cache, RewardsService.defaultRewardExecutor(),
+				new SimpleMeterRegistry());
+	}
+
 	@Test
 	public void isWithinAttractionProximity() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -62,7 +230,7 @@ public class TestRewardsService {
 		User user =tourGuideService.getAllUsers().get(0);
 		rewardsService.calculateRewards(user);
 		Map<String,UserReward> userRewards = tourGuideService.getUserRewards(tourGuideService.getAllUsers().get(0));
-		tourGuideService.tracker.stopTracking();
+		tourGuideService.shutdown();
 		assertEquals(gpsUtil.getAttractions().size(), userRewards.size());
 	}
 
@@ -1,16 +1,27 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
 
@@ -18,8 +29,15 @@ import com.openclassrooms.tourguide.dto.NearAttractionDto;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackerCycleStats;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
+import com.openclassrooms.tourguide.tracker.TrackingResult;
+import com.openclassrooms.tourguide.user.ShardedUserRegistry;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserRegistry;
+import com.openclassrooms.tourguide.user.UserReward;
 import tripPricer.Provider;
+import tripPricer.TripPricer;
 
 public class TestTourGuideService {
 
@@ -35,7 +53,7 @@ public class TestTourGuideService {
 		CompletableFuture<VisitedLocation> u=tourGuideService.trackUserLocation(user);
 		
 		VisitedLocation visitedLocation =u.get() ;
-		tourGuideService.tracker.stopTracking();
+		tourGuideService.shutdown();
 		assertTrue(visitedLocation.userId.equals(user.getUserId()));
 	}
 
@@ -55,7 +73,7 @@ public class TestTourGuideService {
 		User retrivedUser = tourGuideService.getUser(user.getUserName());
 		User retrivedUser2 = tourGuideService.getUser(user2.getUserName());
 
-		tourGuideService.tracker.stopTracking();
+		tourGuideService.shutdown();
 
 		assertEquals(user, retrivedUser);
 		assertEquals(user2, retrivedUser2);
@@ -76,12 +94,127 @@ public class TestTourGuideService {
 
 		List<User> allUsers = tourGuideService.getAllUsers();
 
-		tourGuideService.tracker.stopTracking();
+		tourGuideService.shutdown();
 
 		assertTrue(allUsers.contains(user));
 		assertTrue(allUsers.contains(user2));
 	}
 
+	@Test
+	public void getUserById() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		tourGuideService.addUser(user);
+
+		tourGuideService.shutdown();
+
+		assertEquals(user, tourGuideService.getUser(user.getUserId()));
+	}
+
+	@Test
+	public void registryPartitionsCoverAllUsers() {
+		UserRegistry registry = new ShardedUserRegistry(16);
+		for (int i = 0; i < 1000; i++) {
+			registry.add(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+		}
+
+		for (int count : new int[] { 1, 4, 16, 7, 40 }) {
+			Set<String> seen = new HashSet<>();
+			int total = 0;
+			for (int i = 0; i < count; i++) {
+				List<User> partition = registry.partition(i, count).toList();
+				total += partition.size();
+				partition.forEach(u -> seen.add(u.getUserName()));
+			}
+			assertEquals(1000, total);
+			assertEquals(1000, seen.size());
+		}
+	}
+
+	@Test
+	public void trackerCompletesPartitionedCycle() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(20);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, new TripPricer(),
+				new ShardedUserRegistry(), new TrackerSettings(Duration.ofMillis(400), 4, 5));
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (tourGuideService.tracker.getLastCycleStats() == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		TrackerCycleStats stats = tourGuideService.tracker.getLastCycleStats();
+		tourGuideService.shutdown();
+
+		assertEquals(20, stats.getTrackedUsers());
+		assertEquals(0, stats.getFailedUsers());
+		// three generated locations and one per cycle; the shutdown drains a partition of the next cycle
+		// that may already be in flight
+		tourGuideService.getAllUsers().forEach(u -> assertTrue(u.getVisitedLocations().size() == 4
+				|| u.getVisitedLocations().size() == 5));
+	}
+
+	@Test
+	public void trackUserLocationsReportsEachUser() {
+		User failing = new User(UUID.randomUUID(), "failing", "000", "failing@tourGuide.com");
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				if (userId.equals(failing.getUserId())) {
+					throw new IllegalStateException("No fix");
+				}
+				return super.getUserLocation(userId);
+			}
+		};
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 150; i++) {
+			users.add(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+		}
+		users.add(failing);
+
+		TrackingResult result = tourGuideService.trackUserLocations(users, 20).join();
+		tourGuideService.shutdown();
+
+		assertEquals(150, result.getTrackedCount());
+		assertEquals(Set.of(failing.getUserId()), result.getFailures().keySet());
+		assertEquals(0, failing.getVisitedLocations().size());
+		for (int i = 0; i < 150; i++) {
+			User user = users.get(i);
+			VisitedLocation expected = result.getLocations().get(user.getUserId());
+			assertEquals(1, user.getVisitedLocations().size());
+			assertEquals(expected.location.latitude, user.getLastVisitedLocation().location.latitude);
+			assertEquals(expected.location.longitude, user.getLastVisitedLocation().location.longitude);
+			assertEquals(expected.timeVisited, user.getLastVisitedLocation().timeVisited);
+		}
+	}
+
+	@Test
+	public void shutdownClosesTheResourcesItCreated() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		tourGuideService.shutdown();
+		tourGuideService.shutdown();
+
+		assertThrows(RejectedExecutionException.class, () -> tourGuideService.getLocationEvents().publish(user));
+		assertThrows(RejectedExecutionException.class, () -> tourGuideService.getExecutors().getGps().execute(() -> {
+		}));
+		assertThrows(RejectedExecutionException.class,
+				() -> tourGuideService.getExecutors().getRequest().execute(() -> {
+				}));
+	}
+
 	@Test
 	public void trackUser() throws InterruptedException, ExecutionException {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -92,7 +225,7 @@ public class TestTourGuideService {
 		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
 		CompletableFuture<VisitedLocation> u=tourGuideService.trackUserLocation(user);
 		VisitedLocation visitedLocation =u.get();
-		tourGuideService.tracker.stopTracking();
+		tourGuideService.shutdown();
 
 		assertEquals(user.getUserId(), visitedLocation.userId);
 	}
@@ -107,8 +240,56 @@ public class TestTourGuideService {
 		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
 		CompletableFuture<VisitedLocation> u=tourGuideService.trackUserLocation(user);
 		CompletableFuture<NearAttractionDto[]> nearByAttractions = tourGuideService.getNearByAttractions(u);
-		assertEquals(5, nearByAttractions.get().length);
-		tourGuideService.tracker.stopTracking();
+		NearAttractionDto[] attractions = nearByAttractions.get();
+		tourGuideService.shutdown();
+
+		assertEquals(5, attractions.length);
+		for (int i = 0; i < attractions.length; i++) {
+			assertNotNull(attractions[i].getTouristAttractionName());
+			assertNotNull(attractions[i].getTouristAttractionLocation());
+			assertTrue(attractions[i].getRewardPoints() > 0);
+			if (i > 0) {
+				assertTrue(attractions[i - 1].getDistance() <= attractions[i].getDistance());
+			}
+		}
+	}
+
+	@Test
+	public void tripDealsAreCachedUntilRewardsChange() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		List<Integer> pricedPoints = Collections.synchronizedList(new ArrayList<>());
+		TripPricer tripPricer = new TripPricer() {
+			@Override
+			public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+					int rewardsPoints) {
+				pricedPoints.add(rewardsPoints);
+				return super.getPrice(apiKey, attractionId, adults, children, nightsStay, rewardsPoints);
+			}
+		};
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, tripPricer,
+				new ShardedUserRegistry(), new TrackerSettings());
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attractions.get(0), new Date());
+		user.addUserReward(new UserReward(visitedLocation, attractions.get(0), 10));
+		user.addUserReward(new UserReward(visitedLocation, attractions.get(1), 20));
+
+		// concurrent identical requests share one call
+		List<CompletableFuture<List<Provider>>> requests = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			requests.add(tourGuideService.getTripDealsAsync(user));
+		}
+		List<Provider> providers = tourGuideService.getTripDeals(user);
+		requests.forEach(request -> assertSame(providers, request.join()));
+		user.addUserReward(new UserReward(visitedLocation, attractions.get(2), 5));
+		tourGuideService.getTripDeals(user);
+		tourGuideService.shutdown();
+
+		assertEquals(List.of(30, 35), pricedPoints);
+		assertEquals(35, user.getCumulativeRewardPoints());
+		assertEquals(providers.size(), user.getTripDeals().size());
 	}
 
 	public void getTripDeals() {
@@ -121,7 +302,7 @@ public class TestTourGuideService {
 
 		List<Provider> providers = tourGuideService.getTripDeals(user);
 
-		tourGuideService.tracker.stopTracking();
+		tourGuideService.shutdown();
 
 		assertEquals(10, providers.size());
 	}
@@ -0,0 +1,167 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.RetentionPolicy;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationLog;
+
+public class TestUser {
+
+	@Test
+	public void concurrentAppendsAreNotLost() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		AtomicInteger iterated = new AtomicInteger();
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int writer = 0; writer < 8; writer++) {
+			futures.add(CompletableFuture.runAsync(() -> {
+				for (int i = 0; i < 1000; i++) {
+					user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, i), new Date()));
+					// iterating while the other writers append must only see written slots
+					VisitedLocationLog.Snapshot history = user.getLocationHistory();
+					for (int j = 0; j < history.size(); j++) {
+						if (history.getTimeMillis(j) == 0) {
+							throw new IllegalStateException("unpublished entry");
+						}
+					}
+					iterated.incrementAndGet();
+				}
+			}, executor));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		executor.shutdown();
+
+		assertEquals(8000, user.getVisitedLocations().size());
+		assertEquals(8000, iterated.get());
+	}
+
+	@Test
+	public void historyKeepsTheFixes() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Date time = new Date();
+		for (int i = 0; i < 100; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i * 0.5, -i * 0.25),
+					new Date(time.getTime() + i)));
+		}
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(1, 2), null));
+
+		List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+		assertEquals(101, visitedLocations.size());
+		for (int i = 0; i < 100; i++) {
+			VisitedLocation visitedLocation = visitedLocations.get(i);
+			assertEquals(user.getUserId(), visitedLocation.userId);
+			assertEquals(i * 0.5, visitedLocation.location.latitude);
+			assertEquals(-i * 0.25, visitedLocation.location.longitude);
+			assertEquals(time.getTime() + i, visitedLocation.timeVisited.getTime());
+		}
+		assertEquals(null, user.getLastVisitedLocation().timeVisited);
+		assertEquals(2, user.getLastVisitedLocation().location.longitude);
+	}
+
+	@Test
+	public void retentionOnlyEvictsEvaluatedFixes() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.setRetentionPolicy(new RetentionPolicy(10, Duration.ZERO, Duration.ZERO, Duration.ZERO));
+		for (int i = 0; i < 100; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, 0), new Date(i)));
+		}
+		// nothing was evaluated for rewards yet
+		assertEquals(100, user.getVisitedLocations().size());
+
+		user.advanceRewardedLocationCount(100);
+		boolean compacted = false;
+		for (int i = 100; i < 1000; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i % 90, 0), new Date(i)));
+			user.advanceRewardedLocationCount(i + 1);
+			int size = user.getVisitedLocations().size();
+			// the documented soft limit, twice maxCount, holds from the first compaction of the evaluated fixes on
+			assertTrue(!compacted || size <= 2 * 10);
+			compacted |= size <= 2 * 10;
+		}
+		assertTrue(compacted);
+		VisitedLocationLog.Snapshot history = user.getLocationHistory();
+		assertEquals(999, history.getTimeMillis(history.size() - 1));
+		assertEquals(1000, history.getEndSequence());
+
+		// fixes appended after the watermark are found again by sequence number
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(1, 1), new Date(1000)));
+		history = user.getLocationHistory();
+		assertEquals(history.size() - 1, history.indexOf(user.getRewardedLocationCount()));
+	}
+
+	@Test
+	public void retentionDropsOldFixesAndDownsamples() {
+		long minute = 60_000;
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.setRetentionPolicy(new RetentionPolicy(0, Duration.ofHours(2), Duration.ofMinutes(30),
+				Duration.ofMinutes(10)));
+		// one fix a minute for 4 hours, every one of them evaluated
+		for (int i = 0; i <= 240; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(0, 0), new Date(i * minute)));
+			user.advanceRewardedLocationCount(i + 1);
+		}
+
+		VisitedLocationLog.Snapshot history = user.getLocationHistory();
+		Set<Long> times = new HashSet<>();
+		for (int i = 0; i < history.size(); i++) {
+			times.add(history.getTimeMillis(i));
+		}
+		assertTrue(history.size() < 100);
+		assertTrue(!times.contains(0L));
+		// the last 30 minutes are never downsampled
+		for (int i = 210; i <= 240; i++) {
+			assertTrue(times.contains(i * minute));
+		}
+	}
+
+	@Test
+	public void rewardIsAddedOnlyOncePerAttraction() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+
+		List<Boolean> added = new ArrayList<>();
+		List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+		for (int i = 0; i < 16; i++) {
+			futures.add(CompletableFuture
+					.supplyAsync(() -> user.addUserReward(new UserReward(visitedLocation, attraction, 1))));
+		}
+		futures.forEach(f -> added.add(f.join()));
+
+		assertEquals(1, added.stream().filter(Boolean::booleanValue).count());
+		assertEquals(1, user.getUserRewards().size());
+	}
+
+	@Test
+	public void failedRestoreReleasesTheWriters() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		assertThrows(NullPointerException.class,
+				() -> user.restoreLocationHistory(null, new double[1], new long[1], 1, 1, 0));
+
+		// a later writer gets its turn instead of spinning forever
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(1, 1), new Date(1)));
+		assertEquals(1, user.getVisitedLocations().size());
+		assertEquals(1, user.getLocationHistory().getEndSequence());
+	}
+}